@@ -0,0 +1,54 @@
+package com.mooc.ppjoke.ui.login;
+
+import android.os.StrictMode;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 主线程上开启StrictMode(读写磁盘直接杀进程),UserManager的初始化和登录状态判断都不能在主线程读数据库
+ */
+@RunWith(AndroidJUnit4.class)
+public class UserManagerStrictModeTest {
+
+    @Test
+    public void mainThreadAccessDoesNotTouchDisk() throws Exception {
+        final CountDownLatch loaded = new CountDownLatch(1);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                StrictMode.ThreadPolicy old = StrictMode.getThreadPolicy();
+                StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                        .detectDiskReads()
+                        .detectDiskWrites()
+                        .penaltyLog()
+                        .penaltyDeath()
+                        .build());
+                try {
+                    UserManager manager = UserManager.get();
+                    manager.isLogin();
+                    manager.getUserId();
+                    manager.whenLoaded(new Runnable() {
+                        @Override
+                        public void run() {
+                            loaded.countDown();
+                        }
+                    });
+                } finally {
+                    StrictMode.setThreadPolicy(old);
+                }
+            }
+        });
+        //读完之后在主线程回调
+        assertTrue(loaded.await(5, TimeUnit.SECONDS));
+        assertTrue(UserManager.get().isLoaded());
+    }
+}
@@ -1,8 +1,16 @@
 package com.mooc.ppjoke;
 
 import android.app.Application;
+import android.os.StrictMode;
 
+import com.alibaba.fastjson.parser.ParserConfig;
+import com.mooc.generated.JsonModelRegistry;
 import com.mooc.libnetwork.ApiService;
+import com.mooc.libnetwork.OutboxManager;
+import com.mooc.libnetwork.cache.CacheTrimWorker;
+import com.mooc.ppjoke.ui.login.UserManager;
+import com.mooc.ppjoke.utils.AppConfig;
+import com.mooc.ppjoke.utils.StartupTrace;
 import com.tencent.bugly.crashreport.CrashReport;
 
 /**
@@ -16,9 +24,30 @@ import com.tencent.bugly.crashreport.CrashReport;
 public class JokeApplication extends Application {
     @Override
     public void onCreate() {
+        StartupTrace.start();
+        long begin = StartupTrace.now();
         super.onCreate();
+        //页面配置在后台并行读取、解析,MainActivity用到时大概率已经好了
+        AppConfig.preload();
+        if (BuildConfig.DEBUG) {
+            //缓存数据库已经不允许在主线程访问,其他主线程磁盘读写在debug包里打日志暴露出来
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyLog()
+                    .build());
+        }
+        //注册编译期生成的实体类反序列化器,解析Feed/Comment等不再走反射
+        JsonModelRegistry.register(ParserConfig.getGlobalInstance());
         ApiService.init("http://123.56.232.18:8080/serverdemo", null);
+        //上次没有送达的点赞、评论等,有网络时继续重放
+        OutboxManager.init();
+        //接口缓存表定期按大小淘汰
+        CacheTrimWorker.schedule(this);
+        //提前在子线程读出缓存的登录信息,首页用到时就不用等了
+        UserManager.get();
 
         CrashReport.initCrashReport(getApplicationContext(), "eb455a94a3", true);
+        StartupTrace.record("application", begin);
     }
 }
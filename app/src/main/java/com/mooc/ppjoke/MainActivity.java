@@ -17,17 +17,14 @@ import androidx.navigation.NavController;
 import androidx.navigation.fragment.NavHostFragment;
 
 import com.google.android.material.bottomnavigation.BottomNavigationView;
+import com.mooc.generated.NavRegistry;
 import com.mooc.libcommon.utils.StatusBar;
 import com.mooc.libnavannotation.FragmentDestination;
-import com.mooc.ppjoke.model.Destination;
 import com.mooc.ppjoke.model.User;
 import com.mooc.ppjoke.ui.login.UserManager;
-import com.mooc.ppjoke.utils.AppConfig;
 import com.mooc.ppjoke.utils.NavGraphBuilder;
+import com.mooc.ppjoke.utils.StartupTrace;
 import com.mooc.ppjoke.view.AppBottomBar;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
 
 /**
  * App 主页 入口
@@ -36,7 +33,7 @@ import java.util.Map;
  * 2.内容区域 使用WindowInsetsNavHostFragment 承载
  * <p>
  * 3.底部导航栏 和 内容区域的 切换联动 使用NavController驱动
- * 4.底部导航栏 按钮个数和 内容区域destination个数。由注解处理器NavProcessor来收集,生成assetsdestination.json。而后我们解析它。
+ * 4.底部导航栏 按钮个数和 内容区域destination个数。由注解处理器NavProcessor来收集,生成NavRegistry,运行时直接使用。
  */
 public class MainActivity extends AppCompatActivity
         implements BottomNavigationView.OnNavigationItemSelectedListener {
@@ -47,6 +44,7 @@ public class MainActivity extends AppCompatActivity
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        final long begin = StartupTrace.now();
         //由于 启动时设置了 R.style.launcher 的windowBackground属性
         //势必要在进入主页后,把窗口背景清理掉
         setTheme(R.style.AppTheme);
@@ -64,31 +62,42 @@ public class MainActivity extends AppCompatActivity
         NavGraphBuilder.build(this, fragment.getChildFragmentManager(), navController, fragment.getId());
 
         navView.setOnNavigationItemSelectedListener(this);
-
+        StartupTrace.record("mainActivity onCreate", begin);
+        //窗口第一次layout时执行,近似当作首帧
+        getWindow().getDecorView().post(new Runnable() {
+            @Override
+            public void run() {
+                StartupTrace.record("first frame", begin);
+            }
+        });
     }
 
     @Override
     public boolean onNavigationItemSelected(@NonNull MenuItem menuItem) {
 
-        HashMap<String, Destination> destConfig = AppConfig.getDestConfig();
-        Iterator<Map.Entry<String, Destination>> iterator = destConfig.entrySet().iterator();
-
-        //遍历 target destination 是否需要登录拦截
-        while (iterator.hasNext()) {
-            Map.Entry<String, Destination> entry = iterator.next();
-            Destination value = entry.getValue();
-            if (value != null && !UserManager.get().isLogin() && value.needLogin && value.id == menuItem.getItemId()) {
-                UserManager.get().login(this)
-                        .observe(this, new Observer<User>() {
-                    @Override
-                    public void onChanged(User user) {
-                        if (user != null) {
-                            navView.setSelectedItemId(menuItem.getItemId());
-                        }
+        //target destination 是否需要登录拦截
+        int index = NavRegistry.indexOfId(menuItem.getItemId());
+        if (index >= 0 && NavRegistry.NEED_LOGIN[index] && !UserManager.get().isLoaded()) {
+            //缓存里的登录信息还没读完,读完再重新选中一次,不阻塞主线程
+            UserManager.get().whenLoaded(new Runnable() {
+                @Override
+                public void run() {
+                    navView.setSelectedItemId(menuItem.getItemId());
+                }
+            });
+            return false;
+        }
+        if (index >= 0 && NavRegistry.NEED_LOGIN[index] && !UserManager.get().isLogin()) {
+            UserManager.get().login(this)
+                    .observe(this, new Observer<User>() {
+                @Override
+                public void onChanged(User user) {
+                    if (user != null) {
+                        navView.setSelectedItemId(menuItem.getItemId());
                     }
-                });
-                return false;
-            }
+                }
+            });
+            return false;
         }
 
         Log.e("TAG", menuItem.getItemId()+"");
@@ -3,8 +3,11 @@ package com.mooc.ppjoke.model;
 import androidx.annotation.Nullable;
 import androidx.databinding.BaseObservable;
 
+import com.mooc.libnavannotation.JsonModel;
+
 import java.io.Serializable;
 
+@JsonModel
 public class Comment extends BaseObservable implements Serializable {
     public static final int COMMENT_TYPE_VIDEO = 3;
     public static final int COMMENT_TYPE_IMAGE_TEXT = 2;
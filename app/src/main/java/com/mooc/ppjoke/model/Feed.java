@@ -6,9 +6,12 @@ import androidx.annotation.Nullable;
 import androidx.databinding.BaseObservable;
 import androidx.databinding.Bindable;
 
+import com.mooc.libnavannotation.JsonModel;
+
 import java.io.Serializable;
 
-public class Feed extends BaseObservable implements Serializable {
+@JsonModel
+public class Feed extends BaseObservable implements Serializable, JsonModel.OnParsed {
 
     public static final int TYPE_IMAGE_TEXT = 1;//图文
     public static final int TYPE_VIDEO = 2;//视频
@@ -47,6 +50,9 @@ public class Feed extends BaseObservable implements Serializable {
     public Comment topComment;
     public Ugc ugc;
 
+    //自身字段的hash,解析完就算好; author、ugc、topComment在本地会被整个替换或者修改,不算在内
+    private int contentHash;
+
     @Bindable
     public Ugc getUgc() {
         if (ugc == null) {
@@ -60,11 +66,65 @@ public class Feed extends BaseObservable implements Serializable {
         return author;
     }
 
+    @Override
+    public void onParsed() {
+        contentHash = computeContentHash();
+    }
+
+    /**
+     * 列表差分用: 先比自身字段的hash,不同就直接返回; hash相同也可能是碰撞,还要逐个比字段,再比嵌套的对象
+     */
+    public boolean isContentSame(Feed other) {
+        return contentHash() == other.contentHash()
+                && sameFields(other)
+                && same(author, other.author)
+                && same(topComment, other.topComment)
+                && same(ugc, other.ugc);
+    }
+
+    //不是解析出来的(比如经过序列化传过来的)就用到时再算
+    private int contentHash() {
+        if (contentHash == 0) {
+            contentHash = computeContentHash();
+        }
+        return contentHash;
+    }
+
+    private int computeContentHash() {
+        int hash = id;
+        hash = 31 * hash + (int) (itemId ^ (itemId >>> 32));
+        hash = 31 * hash + itemType;
+        hash = 31 * hash + (int) (createTime ^ (createTime >>> 32));
+        long durationBits = Double.doubleToLongBits(duration);
+        hash = 31 * hash + (int) (durationBits ^ (durationBits >>> 32));
+        hash = 31 * hash + (feeds_text == null ? 0 : feeds_text.hashCode());
+        hash = 31 * hash + (int) (authorId ^ (authorId >>> 32));
+        hash = 31 * hash + (activityIcon == null ? 0 : activityIcon.hashCode());
+        hash = 31 * hash + (activityText == null ? 0 : activityText.hashCode());
+        hash = 31 * hash + width;
+        hash = 31 * hash + height;
+        hash = 31 * hash + (url == null ? 0 : url.hashCode());
+        hash = 31 * hash + (cover == null ? 0 : cover.hashCode());
+        return hash;
+    }
+
+    private static boolean same(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
     @Override
     public boolean equals(@Nullable Object obj) {
         if (obj == null || !(obj instanceof Feed))
             return false;
         Feed newFeed = (Feed) obj;
+        return sameFields(newFeed)
+                && (author != null && author.equals(newFeed.author))
+                && (topComment != null && topComment.equals(newFeed.topComment))
+                && (ugc != null && ugc.equals(newFeed.ugc));
+    }
+
+    //自身的字段,不含嵌套的对象
+    private boolean sameFields(Feed newFeed) {
         return id == newFeed.id
                 && itemId == newFeed.itemId
                 && itemType == newFeed.itemType
@@ -77,10 +137,7 @@ public class Feed extends BaseObservable implements Serializable {
                 && width == newFeed.width
                 && height == newFeed.height
                 && TextUtils.equals(url, newFeed.url)
-                && TextUtils.equals(cover, newFeed.cover)
-                && (author != null && author.equals(newFeed.author))
-                && (topComment != null && topComment.equals(newFeed.topComment))
-                && (ugc != null && ugc.equals(newFeed.ugc));
+                && TextUtils.equals(cover, newFeed.cover);
     }
 
 
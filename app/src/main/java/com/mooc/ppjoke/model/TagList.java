@@ -8,8 +8,11 @@ import androidx.annotation.Nullable;
 import androidx.databinding.BaseObservable;
 import androidx.databinding.Bindable;
 
+import com.mooc.libnavannotation.JsonModel;
+
 import java.io.Serializable;
 
+@JsonModel
 public class TagList extends BaseObservable implements Serializable {
 
     /**
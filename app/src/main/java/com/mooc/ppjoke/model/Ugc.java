@@ -5,8 +5,11 @@ import androidx.databinding.BaseObservable;
 import androidx.databinding.Bindable;
 import androidx.databinding.library.baseAdapters.BR;
 
+import com.mooc.libnavannotation.JsonModel;
+
 import java.io.Serializable;
 
+@JsonModel
 public class Ugc extends BaseObservable implements Serializable {
     /**
      * likeCount : 153
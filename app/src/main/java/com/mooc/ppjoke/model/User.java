@@ -7,10 +7,12 @@ import androidx.databinding.BaseObservable;
 import androidx.databinding.Bindable;
 import androidx.room.Entity;
 
+import com.mooc.libnavannotation.JsonModel;
 import com.mooc.ppjoke.BR;
 
 import java.io.Serializable;
 
+@JsonModel
 public class User extends BaseObservable implements Serializable {
 
     /**
@@ -16,6 +16,8 @@ import androidx.navigation.NavOptions;
 import androidx.navigation.Navigator;
 import androidx.navigation.fragment.FragmentNavigator;
 
+import com.mooc.ppjoke.ui.AbsListFragment;
+
 import java.lang.reflect.Field;
 import java.util.ArrayDeque;
 import java.util.List;
@@ -74,12 +76,17 @@ public class FixFragmentNavigator extends FragmentNavigator {
 
         List<Fragment> fragments = mManager.getFragments();
         for (Fragment fragment : fragments) {
+            if (fragment != frag && !fragment.isHidden()) {
+                //切走的页面还在进行的翻页预加载已经没有意义了,把连接让给新页面
+                cancelPrefetch(fragment);
+            }
             ft.hide(fragment);
         }
         if (!frag.isAdded()) {
             ft.add(mContainerId, frag, tag);
         }
         ft.show(frag);
+        retryFailedPages(frag);
         //ft.replace(mContainerId, frag);
         ft.setPrimaryNavigationFragment(frag);
 
@@ -141,5 +148,28 @@ public class FixFragmentNavigator extends FragmentNavigator {
     private String generateBackStackName(int backStackindex, int destid) {
         return backStackindex + "-" + destid;
     }
-}
 
+    //切回来的页面,切走时被取消的分页重新请求
+    private static void retryFailedPages(Fragment fragment) {
+        if (fragment instanceof AbsListFragment) {
+            ((AbsListFragment) fragment).retryFailedPages();
+        }
+        if (fragment.isAdded()) {
+            for (Fragment child : fragment.getChildFragmentManager().getFragments()) {
+                retryFailedPages(child);
+            }
+        }
+    }
+
+    //沙发、发现等tab的列表是子fragment,一起取消
+    private static void cancelPrefetch(Fragment fragment) {
+        if (fragment instanceof AbsListFragment) {
+            ((AbsListFragment) fragment).cancelPrefetch();
+        }
+        if (fragment.isAdded()) {
+            for (Fragment child : fragment.getChildFragmentManager().getFragments()) {
+                cancelPrefetch(child);
+            }
+        }
+    }
+}
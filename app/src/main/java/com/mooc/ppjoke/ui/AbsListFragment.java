@@ -16,9 +16,12 @@ import androidx.recyclerview.widget.DividerItemDecoration;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import com.mooc.libcommon.view.EmptyView;
+import com.mooc.libnetwork.Request;
+import com.mooc.libnetwork.RequestScheduler;
 import com.mooc.ppjoke.R;
 import com.mooc.ppjoke.databinding.LayoutRefreshViewBinding;
 import com.scwang.smartrefresh.layout.SmartRefreshLayout;
+import com.scwang.smartrefresh.layout.api.RefreshLayout;
 import com.scwang.smartrefresh.layout.constant.RefreshState;
 import com.scwang.smartrefresh.layout.listener.OnLoadMoreListener;
 import com.scwang.smartrefresh.layout.listener.OnRefreshListener;
@@ -52,7 +55,16 @@ public abstract class AbsListFragment<T, M extends AbsViewModel<T>> extends Frag
         mRefreshLayout.setEnableRefresh(true);
         mRefreshLayout.setEnableLoadMore(true);
         mRefreshLayout.setOnRefreshListener(this);
-        mRefreshLayout.setOnLoadMoreListener(this);
+        mRefreshLayout.setOnLoadMoreListener(new OnLoadMoreListener() {
+            @Override
+            public void onLoadMore(@NonNull RefreshLayout refreshLayout) {
+                //之前失败或者被取消的分页还挂着,重新请求它,paging就会接着往下分页
+                if (retryFailedPages()) {
+                    return;
+                }
+                AbsListFragment.this.onLoadMore(refreshLayout);
+            }
+        });
 
         adapter = getAdapter();
         mRecyclerView.setAdapter(adapter);
@@ -81,6 +93,9 @@ public abstract class AbsListFragment<T, M extends AbsViewModel<T>> extends Frag
             mViewModel.getPageData().observe(this, pagedList -> submitList(pagedList));
 
             mViewModel.getBoundaryPageData().observe(this, hasData -> finishRefresh(hasData));
+
+            //快速滑动时按速度提前分页,尽量不让用户看到上拉加载
+            mRecyclerView.addOnScrollListener(new ScrollPrefetcher(adapter, mViewModel));
         }
     }
 
@@ -113,6 +128,22 @@ public abstract class AbsListFragment<T, M extends AbsViewModel<T>> extends Frag
         }
     }
 
+    /**
+     * 重新请求之前失败或者切走时被取消的分页,页面重新可见、上拉加载时调用
+     */
+    public boolean retryFailedPages() {
+        return mViewModel != null && mViewModel.retry();
+    }
+
+    /**
+     * 页面被切走时取消它自己还在排队或者进行中的翻页预加载,不影响其他页面,见FixFragmentNavigator
+     */
+    public void cancelPrefetch() {
+        if (mViewModel != null) {
+            RequestScheduler.cancel(Request.PREFETCH, mViewModel);
+        }
+    }
+
     /**
      * 因而 我们在 onCreateView的时候 创建了 PagedListAdapter
      * 所以，如果arguments 有参数需要传递到Adapter 中，那么需要在getAdapter()方法中取出参数。
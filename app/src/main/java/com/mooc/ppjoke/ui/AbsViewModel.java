@@ -1,5 +1,7 @@
 package com.mooc.ppjoke.ui;
 
+import android.util.Log;
+
 import androidx.annotation.NonNull;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
@@ -9,27 +11,69 @@ import androidx.paging.DataSource;
 import androidx.paging.LivePagedListBuilder;
 import androidx.paging.PagedList;
 
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public abstract class AbsViewModel<T> extends ViewModel {
+    private static final String TAG = "AbsViewModel";
+    //分页请求都是阻塞的,所有列表共用这几个线程,不占用ArchTaskExecutor的IO线程
+    private static final int FETCH_THREADS = 3;
+    private static final ThreadPoolExecutor sFetchExecutor = new ThreadPoolExecutor(FETCH_THREADS, FETCH_THREADS,
+            30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, "page-fetch-" + mCount.incrementAndGet());
+        }
+    });
 
+    static {
+        sFetchExecutor.allowCoreThreadTimeOut(true);
+    }
 
     protected PagedList.Config config;
     private DataSource dataSource;
     private LiveData<PagedList<T>> pageData;
     private MutableLiveData<Boolean> boundaryPageData = new MutableLiveData<>();
+    private volatile boolean cacheFirst;
+    //先展示缓存时,随后回来的第一页网络数据,交给重建的DataSource
+    private volatile List<T> pendingInitialPage;
+    private final AtomicBoolean cacheRead = new AtomicBoolean();
+    //每一页加载耗时(毫秒)的滑动平均, 0表示还没有加载过
+    private volatile long pageLatency;
+    private boolean windowed;
 
 
     public AbsViewModel() {
-        config = new PagedList.Config.Builder()
+        this(0);
+    }
+
+    /**
+     * @param maxSize >0时开启窗口模式: PagedList最多持有这么多个item,离可见区域远的页被丢弃,换成null占位,
+     *                滑回去时由{@link KeyedPageLoader}优先从缓存重新加载。用于长时间浏览的列表,避免item无限堆积在内存里
+     */
+    protected AbsViewModel(int maxSize) {
+        PagedList.Config.Builder builder = new PagedList.Config.Builder()
                 .setPageSize(10)
-                .setInitialLoadSizeHint(12)
-                // .setMaxSize(100)；
-                // .setEnablePlaceholders(false)
+                .setInitialLoadSizeHint(12);
                 // .setPrefetchDistance()
-                .build();
+        if (maxSize > 0) {
+            builder.setEnablePlaceholders(true)
+                    .setMaxSize(maxSize);
+            windowed = true;
+        }
+        config = builder.build();
 
         pageData = new LivePagedListBuilder(factory, config)
                 .setInitialLoadKey(0)
-                //.setFetchExecutor()
+                .setFetchExecutor(sFetchExecutor)
                 .setBoundaryCallback(callback)
                 .build();
     }
@@ -41,6 +85,61 @@ public abstract class AbsViewModel<T> extends ViewModel {
 
     public LiveData<Boolean> getBoundaryPageData() { return boundaryPageData; }
 
+    public static Executor getFetchExecutor() { return sFetchExecutor; }
+
+    public long getPageLatency() { return pageLatency; }
+
+    /**
+     * 重新请求之前失败或者被取消的分页,见{@link KeyedPageLoader#retry()}
+     *
+     * @return 是否有需要重试的分页
+     */
+    public boolean retry() {
+        DataSource source = dataSource;
+        return source instanceof KeyedPageLoader && ((KeyedPageLoader) source).retry();
+    }
+
+    /**
+     * 第一次加载先展示缓存,见{@link KeyedPageLoader}
+     */
+    protected void setCacheFirst(boolean cacheFirst) {
+        this.cacheFirst = cacheFirst;
+    }
+
+    boolean isWindowed() {
+        return windowed;
+    }
+
+    boolean isCacheFirst() {
+        return cacheFirst;
+    }
+
+    //缓存只读一次
+    boolean consumeCacheRead() {
+        return cacheRead.compareAndSet(false, true);
+    }
+
+    void setPendingInitialPage(List<T> page) {
+        pendingInitialPage = page;
+    }
+
+    List<T> takePendingInitialPage() {
+        List<T> page = pendingInitialPage;
+        pendingInitialPage = null;
+        return page;
+    }
+
+    void postBoundaryPageData(boolean hasData) {
+        boundaryPageData.postValue(hasData);
+    }
+
+    void onPageLoaded(boolean initial, int count, long latency) {
+        long average = pageLatency;
+        //新的一次占1/4
+        pageLatency = average == 0 ? latency : (average * 3 + latency) / 4;
+        Log.d(TAG, getClass().getSimpleName() + (initial ? " initial" : " after") + " page: " + count + " items in " + latency + "ms");
+    }
+
 
     //PagedList数据被加载 情况的边界回调callback
     //但 不是每一次分页 都会回调这里，具体请看 ContiguousPagedList#mReceiver#onPageResult
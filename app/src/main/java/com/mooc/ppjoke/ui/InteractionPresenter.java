@@ -21,9 +21,11 @@ import com.mooc.libcommon.global.AppGlobals;
 import com.mooc.libnetwork.ApiResponse;
 import com.mooc.libnetwork.ApiService;
 import com.mooc.libnetwork.JsonCallback;
+import com.mooc.libnetwork.Request;
 import com.mooc.ppjoke.model.Comment;
 import com.mooc.ppjoke.model.Feed;
 import com.mooc.ppjoke.model.TagList;
+import com.mooc.ppjoke.model.Ugc;
 import com.mooc.ppjoke.model.User;
 import com.mooc.ppjoke.ui.login.UserManager;
 import com.mooc.ppjoke.ui.share.ShareDialog;
@@ -42,6 +44,10 @@ public class InteractionPresenter {
 
     private static final String URL_TOGGLE_COMMENT_LIKE = "/ugc/toggleCommentLike";
 
+    private static final String URL_TOGGLE_FAVORITE = "/ugc/toggleFavorite";
+
+    private static final String URL_TOGGLE_USER_FOLLOW = "/ugc/toggleUserFollow";
+
     //给一个帖子点赞/取消点赞，它和给帖子点踩一踩是互斥的
     public static void toggleFeedLike(LifecycleOwner owner, Feed feed) {
         if (!isLogin(owner, new Observer<User>() {
@@ -56,25 +62,7 @@ public class InteractionPresenter {
     }
 
     private static void toggleFeedLikeInternal(Feed feed) {
-        ApiService.get(URL_TOGGLE_FEED_LIK)
-                .addParam("userId", UserManager.get().getUserId())
-                .addParam("itemId", feed.itemId)
-                .execute(new JsonCallback<JSONObject>() {
-                    @Override
-                    public void onSuccess(ApiResponse<JSONObject> response) {
-                        if (response.body != null) {
-                            boolean hasLiked = response.body.getBoolean("hasLiked").booleanValue();
-                            feed.getUgc().setHasLiked(hasLiked);
-                            LiveDataBus.get().with(DATA_FROM_INTERACTION)
-                                    .postValue(feed);
-                        }
-                    }
-
-                    @Override
-                    public void onError(ApiResponse<JSONObject> response) {
-                        showToast(response.message);
-                    }
-                });
+        InteractionQueue.toggle(new FeedReaction(feed, FeedReaction.LIKED));
     }
 
     //给一个帖子点踩一踩/取消踩一踩,它和给帖子点赞是互斥的
@@ -91,22 +79,83 @@ public class InteractionPresenter {
     }
 
     private static void toggleFeedDissInternal(Feed feed) {
-        ApiService.get(URL_TOGGLE_FEED_DISS).addParam("userId", UserManager.get().getUserId())
-                .addParam("itemId", feed.itemId)
-                .execute(new JsonCallback<JSONObject>() {
-                    @Override
-                    public void onSuccess(ApiResponse<JSONObject> response) {
-                        if (response.body != null) {
-                            boolean hasLiked = response.body.getBoolean("hasLiked").booleanValue();
-                            feed.getUgc().setHasdiss(hasLiked);
-                        }
-                    }
+        InteractionQueue.toggle(new FeedReaction(feed, FeedReaction.DISSED));
+    }
 
-                    @Override
-                    public void onError(ApiResponse<JSONObject> response) {
-                        showToast(response.message);
-                    }
-                });
+    /**
+     * 赞和踩是互斥的(见Ugc.setHasLiked/setHasdiss),同一个帖子的赞和踩共用一个key,作为一个三值的状态一起合并,
+     * 否则窗口内先踩后赞时,赞记录的最初状态已经被踩清掉了,会发出相反的请求
+     */
+    private static class FeedReaction extends InteractionQueue.Interaction {
+        static final int NONE = 0;
+        static final int LIKED = 1;
+        static final int DISSED = 2;
+
+        private final Feed feed;
+        //这次点的是赞还是踩
+        private final int clicked;
+
+        FeedReaction(Feed feed, int clicked) {
+            super(feed.itemId, "feedReaction");
+            this.feed = feed;
+            this.clicked = clicked;
+        }
+
+        @Override
+        protected int state() {
+            Ugc ugc = feed.getUgc();
+            return ugc.isHasLiked() ? LIKED : ugc.isHasdiss() ? DISSED : NONE;
+        }
+
+        @Override
+        protected int next(int state) {
+            return state == clicked ? NONE : clicked;
+        }
+
+        @Override
+        protected void applyState(int state) {
+            Ugc ugc = feed.getUgc();
+            if (state == LIKED) {
+                ugc.setHasLiked(true);
+            } else if (state == DISSED) {
+                ugc.setHasdiss(true);
+            } else {
+                ugc.setHasLiked(false);
+                ugc.setHasdiss(false);
+            }
+        }
+
+        //取消时发原来那个动作的切换, 否则发目标动作的切换, 服务端会清掉互斥的另一个
+        private static boolean isLikeRequest(int from, int to) {
+            return to == LIKED || (to == NONE && from == LIKED);
+        }
+
+        @Override
+        protected Request createRequest(int from, int to) {
+            return ApiService.get(isLikeRequest(from, to) ? URL_TOGGLE_FEED_LIK : URL_TOGGLE_FEED_DISS)
+                    .addParam("userId", UserManager.get().getUserId())
+                    .addParam("itemId", feed.itemId);
+        }
+
+        @Override
+        protected int parseState(int from, int to, JSONObject body) {
+            //两个接口返回的都是hasLiked字段,表示切换之后对应的那个动作是否生效
+            if (!body.getBooleanValue("hasLiked")) {
+                return NONE;
+            }
+            return isLikeRequest(from, to) ? LIKED : DISSED;
+        }
+
+        @Override
+        protected void onChanged() {
+            LiveDataBus.get().with(DATA_FROM_INTERACTION)
+                    .postValue(feed);
+        }
+
+        @Override
+        protected void onError(String message) {
+            showToast(message);
+        }
     }
 
     //打开分享面板
@@ -126,6 +175,8 @@ public class InteractionPresenter {
             public void onClick(View v) {
 
                 ApiService.get(URL_SHARE)
+                        .priority(Request.IMMEDIATE)
+                        .coalesce(false)
                         .addParam("itemId", feed.itemId)
                         .execute(new JsonCallback<JSONObject>() {
                             @Override
@@ -161,24 +212,34 @@ public class InteractionPresenter {
     }
 
     private static void toggleCommentLikeInternal(Comment comment) {
+        InteractionQueue.toggle(new InteractionQueue.Toggle(comment.commentId, URL_TOGGLE_COMMENT_LIKE) {
+            @Override
+            protected boolean current() {
+                return comment.getUgc().isHasLiked();
+            }
 
-        ApiService.get(URL_TOGGLE_COMMENT_LIKE)
-                .addParam("commentId", comment.commentId)
-                .addParam("userId", UserManager.get().getUserId())
-                .execute(new JsonCallback<JSONObject>() {
-                    @Override
-                    public void onSuccess(ApiResponse<JSONObject> response) {
-                        if (response.body != null) {
-                            boolean hasLiked = response.body.getBooleanValue("hasLiked");
-                            comment.getUgc().setHasLiked(hasLiked);
-                        }
-                    }
+            @Override
+            protected void apply(boolean value) {
+                comment.getUgc().setHasLiked(value);
+            }
 
-                    @Override
-                    public void onError(ApiResponse<JSONObject> response) {
-                        showToast(response.message);
-                    }
-                });
+            @Override
+            protected Request createRequest() {
+                return ApiService.get(URL_TOGGLE_COMMENT_LIKE)
+                        .addParam("commentId", comment.commentId)
+                        .addParam("userId", UserManager.get().getUserId());
+            }
+
+            @Override
+            protected boolean parseResult(JSONObject body) {
+                return body.getBooleanValue("hasLiked");
+            }
+
+            @Override
+            protected void onError(String message) {
+                showToast(message);
+            }
+        });
     }
 
     //收藏/取消收藏一个帖子
@@ -195,25 +256,40 @@ public class InteractionPresenter {
     }
 
     private static void toggleFeedFavorite(Feed feed) {
-        ApiService.get("/ugc/toggleFavorite")
-                .addParam("itemId", feed.itemId)
-                .addParam("userId", UserManager.get().getUserId())
-                .execute(new JsonCallback<JSONObject>() {
-                    @Override
-                    public void onSuccess(ApiResponse<JSONObject> response) {
-                        if (response.body != null) {
-                            boolean hasFavorite = response.body.getBooleanValue("hasFavorite");
-                            feed.getUgc().setHasFavorite(hasFavorite);
-                            LiveDataBus.get().with(DATA_FROM_INTERACTION)
-                                    .postValue(feed);
-                        }
-                    }
+        InteractionQueue.toggle(new InteractionQueue.Toggle(feed.itemId, URL_TOGGLE_FAVORITE) {
+            @Override
+            protected boolean current() {
+                return feed.getUgc().isHasFavorite();
+            }
 
-                    @Override
-                    public void onError(ApiResponse<JSONObject> response) {
-                        showToast(response.message);
-                    }
-                });
+            @Override
+            protected void apply(boolean value) {
+                feed.getUgc().setHasFavorite(value);
+            }
+
+            @Override
+            protected Request createRequest() {
+                return ApiService.get(URL_TOGGLE_FAVORITE)
+                        .addParam("itemId", feed.itemId)
+                        .addParam("userId", UserManager.get().getUserId());
+            }
+
+            @Override
+            protected boolean parseResult(JSONObject body) {
+                return body.getBooleanValue("hasFavorite");
+            }
+
+            @Override
+            protected void onChanged() {
+                LiveDataBus.get().with(DATA_FROM_INTERACTION)
+                        .postValue(feed);
+            }
+
+            @Override
+            protected void onError(String message) {
+                showToast(message);
+            }
+        });
     }
 
 
@@ -231,25 +307,40 @@ public class InteractionPresenter {
     }
 
     private static void toggleFollowUser(Feed feed) {
-        ApiService.get("/ugc/toggleUserFollow")
-                .addParam("followUserId", UserManager.get().getUserId())
-                .addParam("userId", feed.author.userId)
-                .execute(new JsonCallback<JSONObject>() {
-                    @Override
-                    public void onSuccess(ApiResponse<JSONObject> response) {
-                        if (response.body != null) {
-                            boolean hasFollow = response.body.getBooleanValue("hasLiked");
-                            feed.getAuthor().setHasFollow(hasFollow);
-                            LiveDataBus.get().with(DATA_FROM_INTERACTION)
-                                    .postValue(feed);
-                        }
-                    }
+        InteractionQueue.toggle(new InteractionQueue.Toggle(feed.author.userId, URL_TOGGLE_USER_FOLLOW) {
+            @Override
+            protected boolean current() {
+                return feed.getAuthor().isHasFollow();
+            }
 
-                    @Override
-                    public void onError(ApiResponse<JSONObject> response) {
-                        showToast(response.message);
-                    }
-                });
+            @Override
+            protected void apply(boolean value) {
+                feed.getAuthor().setHasFollow(value);
+            }
+
+            @Override
+            protected Request createRequest() {
+                return ApiService.get(URL_TOGGLE_USER_FOLLOW)
+                        .addParam("followUserId", UserManager.get().getUserId())
+                        .addParam("userId", feed.author.userId);
+            }
+
+            @Override
+            protected boolean parseResult(JSONObject body) {
+                return body.getBooleanValue("hasLiked");
+            }
+
+            @Override
+            protected void onChanged() {
+                LiveDataBus.get().with(DATA_FROM_INTERACTION)
+                        .postValue(feed);
+            }
+
+            @Override
+            protected void onError(String message) {
+                showToast(message);
+            }
+        });
     }
 
     public static LiveData<Boolean> deleteFeed(Context context, long itemId) {
@@ -264,6 +355,7 @@ public class InteractionPresenter {
 
     private static void deleteFeedInternal(MutableLiveData<Boolean> liveData, long itemId) {
         ApiService.get("/feeds/deleteFeed")
+                .priority(Request.IMMEDIATE)
                 .addParam("itemId", itemId)
                 .execute(new JsonCallback<JSONObject>() {
                     @Override
@@ -295,6 +387,7 @@ public class InteractionPresenter {
 
     private static void deleteFeedCommentInternal(LiveData liveData, long itemId, long commentId) {
         ApiService.get("/comment/deleteComment")
+                .priority(Request.IMMEDIATE)
                 .addParam("userId", UserManager.get().getUserId())
                 .addParam("commentId", commentId)
                 .addParam("itemId", itemId)
@@ -331,6 +424,8 @@ public class InteractionPresenter {
 
     private static void toggleTagLikeInternal(TagList tagList) {
         ApiService.get("/tag/toggleTagFollow")
+                .priority(Request.IMMEDIATE)
+                .coalesce(false)
                 .addParam("tagId", tagList.tagId)
                 .addParam("userId", UserManager.get().getUserId())
                 .execute(new JsonCallback<JSONObject>() {
@@ -360,6 +455,18 @@ public class InteractionPresenter {
 
 
     private static boolean isLogin(LifecycleOwner owner, Observer<User> observer) {
+        if (!UserManager.get().isLoaded()) {
+            //缓存里的登录信息还没读完,读完后再判断,不阻塞主线程
+            UserManager.get().whenLoaded(new Runnable() {
+                @Override
+                public void run() {
+                    if (isLogin(owner, observer) && observer != null) {
+                        observer.onChanged(UserManager.get().getUser());
+                    }
+                }
+            });
+            return false;
+        }
         if (UserManager.get().isLogin()) {
             return true;
         } else {
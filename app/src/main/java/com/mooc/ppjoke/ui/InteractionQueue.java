@@ -0,0 +1,298 @@
+package com.mooc.ppjoke.ui;
+
+import android.annotation.SuppressLint;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.arch.core.executor.ArchTaskExecutor;
+
+import com.alibaba.fastjson.JSONObject;
+import com.mooc.libnetwork.ApiResponse;
+import com.mooc.libnetwork.JsonCallback;
+import com.mooc.libnetwork.OutboxManager;
+import com.mooc.libnetwork.Request;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 点赞、踩、收藏、关注等开关类互动的提交队列
+ * <p>
+ * 1.点击后立即修改本地的Ugc/User(乐观更新),界面不用等网络
+ * 2.同一个key在{@link #FLUSH_DELAY}窗口内的多次点击只记录窗口开始前的状态,
+ * 窗口结束时和当前状态比较: 一样就一个请求都不用发; 不一样就只发一次从最初状态切换到当前状态的请求。
+ * 互相影响的互动(比如同一个帖子的赞和踩)要用同一个key,把它们当成一个多值的状态,见{@link Interaction}
+ * 3.窗口内攒下的所有互动一起提交,服务端返回后以服务端的状态为准,失败则回滚到最初的状态。
+ * 同一个key可能有多次提交同时在进行,先发的可能后返回,只用最后一次提交的结果对齐,见{@link Interaction#sequence}
+ * 4.请求没能发到服务端的不回滚,存入发件箱等有网络时重放,重放的结果回来后再和服务端对齐
+ * <p>
+ * 服务端目前没有批量接口,一次flush仍然是每个key各发一个切换请求
+ * <p>
+ * 所有方法都需要在主线程调用
+ */
+public class InteractionQueue {
+    private static final long FLUSH_DELAY = 500;
+
+    private static final HashMap<String, Interaction> sPending = new HashMap<>();
+    //存入发件箱还没有送达的互动, 以及每个key还有几条没送达
+    private static final HashMap<String, Interaction> sQueued = new HashMap<>();
+    private static final HashMap<String, Integer> sQueuedCount = new HashMap<>();
+    private static final Handler sHandler = new Handler(Looper.getMainLooper());
+    private static final AtomicLong sCoalescedCount = new AtomicLong();
+    //每个key最后一次提交的序号,结果回来之前(包括存入发件箱等待重放)一直保留
+    private static final HashMap<String, Integer> sLatest = new HashMap<>();
+    private static int sSequence;
+
+    private static final Runnable sFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    static {
+        OutboxManager.addListener(new OutboxManager.OnDeliveredListener() {
+            @Override
+            public void onDelivered(String tag, ApiResponse<Object> response) {
+                onOutboxDelivered(tag, response);
+            }
+        });
+    }
+
+    /**
+     * 一次点击。状态用int表示,可以是开关(0/1),也可以是互斥的几个值(比如 无/赞/踩)
+     */
+    public static abstract class Interaction {
+        final String key;
+        //窗口开始前(也就是服务端认为)的状态
+        int initial;
+        //提交出去的目标状态
+        int target;
+        //提交的序号,越大越新
+        int sequence;
+
+        public Interaction(long itemId, String group) {
+            this.key = group + ":" + itemId;
+        }
+
+        //本地当前的状态
+        protected abstract int state();
+
+        //这次点击之后应该变成的状态
+        protected abstract int next(int state);
+
+        //修改本地的状态
+        protected abstract void applyState(int state);
+
+        //从from切换到to要发的请求
+        protected abstract Request createRequest(int from, int to);
+
+        //从服务端的返回中取出切换之后的状态
+        protected abstract int parseState(int from, int to, JSONObject body);
+
+        //本地状态发生变化之后的回调,比如通知其他页面同步
+        protected void onChanged() {
+        }
+
+        protected void onError(String message) {
+        }
+    }
+
+    /**
+     * 开关类的互动,服务端收到一次就翻转一次
+     */
+    public static abstract class Toggle extends Interaction {
+
+        public Toggle(long itemId, String action) {
+            super(itemId, action);
+        }
+
+        protected abstract boolean current();
+
+        protected abstract void apply(boolean value);
+
+        protected abstract Request createRequest();
+
+        protected abstract boolean parseResult(JSONObject body);
+
+        @Override
+        protected final int state() {
+            return current() ? 1 : 0;
+        }
+
+        @Override
+        protected final int next(int state) {
+            return 1 - state;
+        }
+
+        @Override
+        protected final void applyState(int state) {
+            apply(state == 1);
+        }
+
+        @Override
+        protected final Request createRequest(int from, int to) {
+            return createRequest();
+        }
+
+        @Override
+        protected final int parseState(int from, int to, JSONObject body) {
+            return parseResult(body) ? 1 : 0;
+        }
+    }
+
+    public static void toggle(Interaction interaction) {
+        Interaction pending = sPending.get(interaction.key);
+        if (pending == null) {
+            interaction.initial = interaction.state();
+        } else {
+            //以最新的一次点击为准,它持有的可能是另一个页面上的对象
+            interaction.initial = pending.initial;
+            sCoalescedCount.incrementAndGet();
+        }
+        sPending.put(interaction.key, interaction);
+        interaction.applyState(interaction.next(interaction.state()));
+        interaction.onChanged();
+
+        sHandler.removeCallbacks(sFlushRunnable);
+        sHandler.postDelayed(sFlushRunnable, FLUSH_DELAY);
+    }
+
+    //被合并掉、没有发出去的点击次数
+    public static long getCoalescedCount() {
+        return sCoalescedCount.get();
+    }
+
+    private static void flush() {
+        List<Interaction> interactions = new ArrayList<>(sPending.values());
+        sPending.clear();
+        for (Interaction interaction : interactions) {
+            if (interaction.state() == interaction.initial) {
+                //又点回了最初的状态,和服务端一致,不需要提交
+                sCoalescedCount.incrementAndGet();
+                continue;
+            }
+            submit(interaction);
+        }
+    }
+
+    private static void submit(final Interaction interaction) {
+        interaction.target = interaction.state();
+        interaction.sequence = ++sSequence;
+        sLatest.put(interaction.key, interaction.sequence);
+        interaction.createRequest(interaction.initial, interaction.target)
+                .coalesce(false)
+                .priority(Request.IMMEDIATE)
+                .outbox(interaction.key)
+                .execute(new JsonCallback<JSONObject>() {
+                    @Override
+                    public void onSuccess(ApiResponse<JSONObject> response) {
+                        //服务端处理成功但是没有返回状态,认为已经切换到了目标状态
+                        final int result = response.body == null ? interaction.target
+                                : interaction.parseState(interaction.initial, interaction.target, response.body);
+                        runOnMainThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                onResult(interaction, result);
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onError(final ApiResponse<JSONObject> response) {
+                        runOnMainThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (response.queued) {
+                                    onQueued(interaction);
+                                    return;
+                                }
+                                rollback(interaction, response.message);
+                            }
+                        });
+                    }
+                });
+    }
+
+    /**
+     * 这次提交是不是这个key最后一次提交的,是的话它的结果回来之后这个key就没有提交在进行了。
+     * 不是的话说明后面又提交过,服务端按顺序处理,旧的结果已经过时,等最后一次的结果再对齐
+     */
+    private static boolean complete(Interaction interaction) {
+        Integer latest = sLatest.get(interaction.key);
+        if (latest == null || latest != interaction.sequence) {
+            return false;
+        }
+        sLatest.remove(interaction.key);
+        return true;
+    }
+
+    private static void onResult(Interaction interaction, int result) {
+        if (!complete(interaction)) {
+            return;
+        }
+        //提交期间又有新的点击,以新的为准,等它提交后再对齐
+        Interaction newer = sPending.get(interaction.key);
+        if (newer != null) {
+            newer.initial = result;
+        } else if (interaction.state() != result) {
+            interaction.applyState(result);
+            interaction.onChanged();
+        }
+    }
+
+    private static void rollback(Interaction interaction, String message) {
+        if (!complete(interaction)) {
+            interaction.onError(message);
+            return;
+        }
+        Interaction newer = sPending.get(interaction.key);
+        if (newer != null) {
+            newer.initial = interaction.initial;
+        } else {
+            interaction.applyState(interaction.initial);
+            interaction.onChanged();
+        }
+        interaction.onError(message);
+    }
+
+    //请求已经存入发件箱,保留乐观更新的状态,认为服务端最终会切换成功
+    private static void onQueued(Interaction interaction) {
+        Integer count = sQueuedCount.get(interaction.key);
+        sQueuedCount.put(interaction.key, count == null ? 1 : count + 1);
+        sQueued.put(interaction.key, interaction);
+        Interaction newer = sPending.get(interaction.key);
+        if (newer != null) {
+            newer.initial = interaction.target;
+        }
+    }
+
+    private static void onOutboxDelivered(String tag, ApiResponse<Object> response) {
+        Integer count = sQueuedCount.get(tag);
+        if (count == null) {
+            //进程重启之前入队的,界面上的对象已经不在了,下次刷新时自然会拿到服务端的状态
+            return;
+        }
+        if (count > 1) {
+            //同一个key后面还有没送达的切换,等最后一条再对齐
+            sQueuedCount.put(tag, count - 1);
+            return;
+        }
+        sQueuedCount.remove(tag);
+        Interaction interaction = sQueued.remove(tag);
+        if (response.success) {
+            onResult(interaction, response.body instanceof JSONObject
+                    ? interaction.parseState(interaction.initial, interaction.target, (JSONObject) response.body)
+                    : interaction.target);
+        } else {
+            rollback(interaction, response.message);
+        }
+    }
+
+    @SuppressLint("RestrictedApi")
+    private static void runOnMainThread(Runnable runnable) {
+        ArchTaskExecutor.getMainThreadExecutor().execute(runnable);
+    }
+}
@@ -0,0 +1,294 @@
+package com.mooc.ppjoke.ui;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.paging.ItemKeyedDataSource;
+
+import com.mooc.libnetwork.ApiResponse;
+import com.mooc.libnetwork.Request;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 通用的按item key分页的数据源,各个列表页只需要提供每一页的请求和item的key
+ * <p>
+ * 1.第一页用VISIBLE优先级,向后分页用PREFETCH优先级,切换tab时会被取消
+ * 2.ViewModel开启了{@link AbsViewModel#setCacheFirst(boolean)}时,第一次加载先用缓存完成loadInitial,同时在后台请求网络。
+ * 网络数据回来后invalidate,重建的DataSource直接用这份数据完成loadInitial,列表只做一次缓存到网络数据的差分,
+ * 不需要另外的PagedList; 第一页的网络结果总是写回缓存
+ * 3.同一个key的向后分页同时只会有一个请求。paging自己触发的loadAfter和上拉加载手动触发的
+ * {@link #loadAfter(Object, LoadCallback)}经常是同一页: 手动的后来直接返回空列表; paging的后来不能回调空列表
+ * (它会认为已经到底),和失败一样挂起等重试
+ * 4.向后分页完成后通过{@link AbsViewModel#getBoundaryPageData()}通知UI本次是否有数据。
+ * 请求失败或者被取消时不能用空列表回调paging(它会认为已经到底,再也不会分页),先挂起,等{@link #retry()}重新请求
+ * 5.每一页的加载耗时交给{@link AbsViewModel}统计
+ * 6.窗口模式下每一页都写缓存,并记下每一页是用哪个key请求的。paging丢弃前面的页之后再滑回去会调用loadBefore,
+ * 这时按记录找到前一页的请求,先读缓存,没有再请求网络
+ * <p>
+ * 加载都是阻塞的,运行在{@link AbsViewModel#getFetchExecutor()}上
+ */
+public abstract class KeyedPageLoader<Key, T> extends ItemKeyedDataSource<Key, T> {
+    private final AbsViewModel<T> mViewModel;
+    private final Key mInitialKey;
+    //正在向后分页的key
+    private final Set<Key> mLoadingKeys = Collections.newSetFromMap(new ConcurrentHashMap<Key, Boolean>());
+    //失败或者被取消、还没有回调paging的分页
+    private final ConcurrentLinkedQueue<Runnable> mRetries = new ConcurrentLinkedQueue<>();
+    //窗口模式下加载过的页, 分别以页内第一个、最后一个item的key索引
+    private final ConcurrentHashMap<Key, Page<Key>> mPagesByFirst = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Key, Page<Key>> mPagesByLast = new ConcurrentHashMap<>();
+
+    //重新加载一页需要的信息,不持有item本身
+    private static class Page<Key> {
+        final Key requestKey;
+        final int count;
+
+        Page(Key requestKey, int count) {
+            this.requestKey = requestKey;
+            this.count = count;
+        }
+    }
+
+    /**
+     * @param initialKey 第一页请求使用的key,一般是0
+     */
+    public KeyedPageLoader(AbsViewModel<T> viewModel, Key initialKey) {
+        mViewModel = viewModel;
+        mInitialKey = initialKey;
+    }
+
+    /**
+     * 创建第一页或者key之后那一页的请求,必须设置responseType,优先级和缓存策略由这里统一设置
+     */
+    protected abstract Request createRequest(Key key, int count);
+
+    @NonNull
+    @Override
+    public abstract Key getKey(@NonNull T item);
+
+    /**
+     * 一页数据加载完成,在分页线程回调,此时还没有交给paging
+     */
+    protected void onPageLoaded(Key key, List<T> page) {
+    }
+
+    @Override
+    public void loadInitial(@NonNull LoadInitialParams<Key> params, @NonNull LoadInitialCallback<T> callback) {
+        int count = params.requestedLoadSize;
+        List<T> page = mViewModel.takePendingInitialPage();
+        if (page != null) {
+            //上一个DataSource先展示了缓存,这是随后回来的网络数据
+            onLoaded(mInitialKey, count, page);
+        } else if (mViewModel.isCacheFirst() && mViewModel.consumeCacheRead()) {
+            //缓存只在第一次加载时展示,下拉刷新直接走网络
+            List<T> cache = readCache(createRequest(mInitialKey, count));
+            if (cache != null && !cache.isEmpty()) {
+                onLoaded(mInitialKey, count, cache);
+                deliverInitial(cache, callback);
+                refreshInitial(count);
+                return;
+            }
+            page = load(mInitialKey, count);
+        } else {
+            page = load(mInitialKey, count);
+        }
+        //第一页失败时给空列表,列表显示空页面,下拉刷新会重新创建DataSource
+        deliverInitial(page == null ? Collections.<T>emptyList() : page, callback);
+    }
+
+    private void deliverInitial(List<T> page, LoadInitialCallback<T> callback) {
+        if (mViewModel.isWindowed()) {
+            //有占位paging才会把丢弃的页换成null,而不是直接删掉让列表跳动; 总数未知,末尾不占位,
+            //否则下一页为空时那个占位会一直留在列表末尾
+            callback.onResult(page, 0, page.size());
+        } else {
+            callback.onResult(page);
+        }
+    }
+
+    //缓存已经展示出去了,后台请求第一页,有数据就让paging用它重建列表
+    private void refreshInitial(final int count) {
+        AbsViewModel.getFetchExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                long begin = SystemClock.elapsedRealtime();
+                List<T> page = fetch(mInitialKey, count, true);
+                //网络失败就继续展示缓存
+                if (page == null) {
+                    return;
+                }
+                mViewModel.onPageLoaded(true, page.size(), SystemClock.elapsedRealtime() - begin);
+                if (!page.isEmpty() && !isInvalid()) {
+                    mViewModel.setPendingInitialPage(page);
+                    invalidate();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void loadAfter(@NonNull final LoadParams<Key> params, @NonNull final LoadCallback<T> callback) {
+        List<T> page = load(params.key, params.requestedLoadSize);
+        if (page == null) {
+            mRetries.add(new Runnable() {
+                @Override
+                public void run() {
+                    loadAfter(params, callback);
+                }
+            });
+            return;
+        }
+        callback.onResult(page);
+    }
+
+    @Override
+    public void loadBefore(@NonNull final LoadParams<Key> params, @NonNull final LoadCallback<T> callback) {
+        //params.key是当前第一个item,它所在页的请求key就是前一页的最后一个item
+        Page<Key> current = mPagesByFirst.get(params.key);
+        Page<Key> previous = current == null ? null : mPagesByLast.get(current.requestKey);
+        if (previous == null) {
+            callback.onResult(Collections.<T>emptyList());
+            return;
+        }
+        long begin = SystemClock.elapsedRealtime();
+        List<T> page = reload(previous);
+        if (page == null) {
+            mRetries.add(new Runnable() {
+                @Override
+                public void run() {
+                    loadBefore(params, callback);
+                }
+            });
+            return;
+        }
+        callback.onResult(page);
+        mViewModel.onPageLoaded(false, page.size(), SystemClock.elapsedRealtime() - begin);
+    }
+
+    /**
+     * paging不再自动分页之后(比如已经通知过没有更多数据),由上拉加载手动加载key之后的一页
+     */
+    public void loadAfter(final Key key, final LoadCallback<T> callback) {
+        if (key == null || key.equals(mInitialKey) || mLoadingKeys.contains(key)) {
+            callback.onResult(Collections.<T>emptyList());
+            return;
+        }
+        AbsViewModel.getFetchExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                //这里的callback是页面自己的,失败了给空列表就行,不影响paging
+                List<T> page = load(key, mViewModel.config.pageSize);
+                callback.onResult(page == null ? Collections.<T>emptyList() : page);
+            }
+        });
+    }
+
+    /**
+     * 重新请求之前失败或者被取消的分页,比如页面重新可见、用户上拉加载时
+     *
+     * @return 是否有需要重试的分页
+     */
+    public boolean retry() {
+        boolean retried = false;
+        Runnable retry;
+        while ((retry = mRetries.poll()) != null) {
+            AbsViewModel.getFetchExecutor().execute(retry);
+            retried = true;
+        }
+        return retried;
+    }
+
+    //失败、被取消或者同一个key已经在请求时返回null
+    private List<T> load(Key key, int count) {
+        boolean initial = key.equals(mInitialKey);
+        if (!initial && !mLoadingKeys.add(key)) {
+            return null;
+        }
+        long begin = SystemClock.elapsedRealtime();
+        List<T> page;
+        try {
+            page = fetch(key, count, initial);
+        } finally {
+            if (!initial) {
+                mLoadingKeys.remove(key);
+            }
+        }
+        if (page == null) {
+            if (!initial) {
+                //关掉上拉加载的动画,分页本身还挂着等重试
+                mViewModel.postBoundaryPageData(false);
+            }
+            return null;
+        }
+        onLoaded(key, count, page);
+        mViewModel.onPageLoaded(initial, page.size(), SystemClock.elapsedRealtime() - begin);
+        if (!initial) {
+            //告知UI层 本次分页是否有更多数据被加载回来了,也方便UI层关闭上拉加载的动画
+            mViewModel.postBoundaryPageData(page.size() > 0);
+        }
+        return page;
+    }
+
+    private void onLoaded(Key key, int count, List<T> page) {
+        if (mViewModel.isWindowed() && !page.isEmpty()) {
+            Page<Key> record = new Page<>(key, count);
+            mPagesByFirst.put(getKey(page.get(0)), record);
+            mPagesByLast.put(getKey(page.get(page.size() - 1)), record);
+        }
+        onPageLoaded(key, page);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<T> fetch(Key key, int count, boolean initial) {
+        Request request = createRequest(key, count);
+        if (initial && mViewModel.isCacheFirst()) {
+            //下次启动时先展示
+            request.cacheStrategy(Request.NET_CACHE);
+        } else if (mViewModel.isWindowed()) {
+            //被丢弃之后再滑回来时可以直接从缓存取
+            request.cacheStrategy(Request.NET_CACHE);
+        }
+        //首屏和界面抢先, 翻页属于预加载, 切换tab时按ViewModel取消这个页面自己的
+        request.priority(initial ? Request.VISIBLE : Request.PREFETCH).tag(mViewModel);
+        return toPage(request.execute());
+    }
+
+    //请求失败或者被取消返回null; 成功但没有数据才是真的到底了
+    private List<T> toPage(ApiResponse<List<T>> response) {
+        if (!response.success) {
+            return null;
+        }
+        return response.body == null ? Collections.<T>emptyList() : response.body;
+    }
+
+    //重新加载之前丢弃的一页,用户正滑向它,按VISIBLE优先级请求, 失败返回null
+    @SuppressWarnings("unchecked")
+    private List<T> reload(Page<Key> page) {
+        Request request = createRequest(page.requestKey, page.count);
+        List<T> cache = readCache(request);
+        if (cache != null && !cache.isEmpty()) {
+            return cache;
+        }
+        ApiResponse<List<T>> response = request.cacheStrategy(Request.NET_CACHE)
+                .priority(Request.VISIBLE)
+                .tag(mViewModel)
+                .execute();
+        return toPage(response);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<T> readCache(Request request) {
+        try {
+            ApiResponse<List<T>> cache = ((Request) request.clone()).cacheStrategy(Request.CACHE_ONLY).execute();
+            return cache.body;
+        } catch (CloneNotSupportedException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+}
@@ -27,7 +27,8 @@ public abstract class MutableItemKeyedDataSource<Key, Value> extends ItemKeyedDa
 
     public PagedList<Value> buildNewPagedList(PagedList.Config config) {
         PagedList<Value> pagedList = new PagedList.Builder<Key, Value>(this, config)
-                .setFetchExecutor(ArchTaskExecutor.getIOThreadExecutor())
+                //loadAfter会代理到原来阻塞请求网络的DataSource
+                .setFetchExecutor(AbsViewModel.getFetchExecutor())
                 .setNotifyExecutor(ArchTaskExecutor.getMainThreadExecutor())
                 .build();
 
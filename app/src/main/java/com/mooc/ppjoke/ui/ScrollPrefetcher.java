@@ -0,0 +1,89 @@
+package com.mooc.ppjoke.ui;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.paging.PagedList;
+import androidx.paging.PagedListAdapter;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.mooc.libcommon.extention.AbsPagedListAdapter;
+
+/**
+ * 按滑动速度提前触发向后分页
+ * <p>
+ * PagedList.Config的prefetchDistance是固定的,快速fling时往往已经滑到底了下一页还没回来,只能看到上拉加载的footer。
+ * 这里用 每毫秒滑过的item数 x 分页耗时 估算下一页回来之前还会滑过多少个item,
+ * 再对那个位置调用{@link PagedList#loadAround(int)},paging发现它离末尾小于prefetchDistance就会提前loadAfter
+ * <p>
+ * 分页耗时取自{@link AbsViewModel#getPageLatency()},还没有分页过时按{@link #DEFAULT_LATENCY}估计
+ */
+public class ScrollPrefetcher extends RecyclerView.OnScrollListener {
+    private static final long DEFAULT_LATENCY = 800;
+    //速度的采样间隔,太短的话一帧只滑过零到一个item,算出来的速度抖动很大
+    private static final long SAMPLE_INTERVAL = 50;
+    //耗时有波动,多留一半的余量
+    private static final float SAFETY_FACTOR = 1.5f;
+    //最多提前这么多个item,避免一次fling预加载太多页
+    private static final int MAX_AHEAD = 50;
+
+    private final PagedListAdapter<?, ?> mAdapter;
+    private final AbsViewModel<?> mViewModel;
+
+    private int mLastPosition = -1;
+    private long mLastTime;
+    //每毫秒滑过的item数
+    private float mVelocity;
+
+    public ScrollPrefetcher(PagedListAdapter<?, ?> adapter, AbsViewModel<?> viewModel) {
+        mAdapter = adapter;
+        mViewModel = viewModel;
+    }
+
+    @Override
+    public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+        if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+            mLastPosition = -1;
+            mVelocity = 0;
+        }
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        if (dy <= 0 || !(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) {
+            return;
+        }
+        int position = ((LinearLayoutManager) recyclerView.getLayoutManager()).findLastVisibleItemPosition();
+        long now = SystemClock.uptimeMillis();
+        if (mLastPosition < 0) {
+            mLastPosition = position;
+            mLastTime = now;
+            return;
+        }
+        if (now - mLastTime < SAMPLE_INTERVAL) {
+            return;
+        }
+        float velocity = (position - mLastPosition) / (float) (now - mLastTime);
+        mVelocity = mVelocity == 0 ? velocity : (mVelocity + velocity) / 2;
+        mLastPosition = position;
+        mLastTime = now;
+
+        PagedList<?> currentList = mAdapter.getCurrentList();
+        if (currentList == null || currentList.isEmpty()) {
+            return;
+        }
+        long latency = mViewModel.getPageLatency();
+        if (latency <= 0) {
+            latency = DEFAULT_LATENCY;
+        }
+        //findLastVisibleItemPosition是adapter的位置,包含了headerView,loadAround要的是PagedList里的下标
+        int headerCount = mAdapter instanceof AbsPagedListAdapter ? ((AbsPagedListAdapter<?, ?>) mAdapter).getHeaderCount() : 0;
+        int index = Math.min(currentList.size() - 1, Math.max(0, position - headerCount));
+        int ahead = Math.min(MAX_AHEAD, (int) Math.ceil(mVelocity * latency * SAFETY_FACTOR));
+        int target = Math.min(currentList.size() - 1, index + ahead);
+        if (ahead > 0 && target > index) {
+            currentList.loadAround(target);
+        }
+    }
+}
@@ -35,6 +35,7 @@ import com.mooc.libcommon.view.ViewHelper;
 import com.mooc.libnetwork.ApiResponse;
 import com.mooc.libnetwork.ApiService;
 import com.mooc.libnetwork.JsonCallback;
+import com.mooc.libnetwork.Request;
 import com.mooc.ppjoke.R;
 import com.mooc.ppjoke.databinding.LayoutCommentDialogBinding;
 import com.mooc.ppjoke.model.Comment;
@@ -53,6 +54,8 @@ public class CommentDialog extends AppCompatDialogFragment implements View.OnCli
     private long itemId;
     private commentAddListener mListener;
     private static final String KEY_ITEM_ID = "key_item_id";
+    //发件箱里评论请求的tag前缀, 后面跟itemId
+    public static final String OUTBOX_TAG_PREFIX = "comment:";
     private String filePath;
     private int width, height;
     private boolean isVideo;
@@ -224,6 +227,11 @@ public class CommentDialog extends AppCompatDialogFragment implements View.OnCli
     }
 
     private void publish() {
+        //登录信息还没读完时userId是0,等读完再发
+        if (!UserManager.get().isLoaded()) {
+            UserManager.get().whenLoaded(() -> publish());
+            return;
+        }
         String commentText = mBinding.inputView.getText().toString();
         ApiService.post("/comment/addComment")
                 .addParam("userId", UserManager.get().getUserId())
@@ -233,6 +241,8 @@ public class CommentDialog extends AppCompatDialogFragment implements View.OnCli
                 .addParam("video_url", isVideo ? fileUrl : null)
                 .addParam("width", width)
                 .addParam("height", height)
+                .priority(Request.IMMEDIATE)
+                .outbox(OUTBOX_TAG_PREFIX + itemId)
                 .execute(new JsonCallback<Comment>() {
                     @Override
                     public void onSuccess(ApiResponse<Comment> response) {
@@ -242,6 +252,12 @@ public class CommentDialog extends AppCompatDialogFragment implements View.OnCli
 
                     @Override
                     public void onError(ApiResponse<Comment> response) {
+                        if (response.queued) {
+                            //已经存入发件箱,联网后自动发送,送达后由ViewHandler插入列表
+                            showToast("网络不给力,评论将在联网后自动发送");
+                            ArchTaskExecutor.getMainThreadExecutor().execute(() -> dismiss());
+                            return;
+                        }
                         showToast("评论失败:" + response.message);
                         dismissLoadingDialog();
                     }
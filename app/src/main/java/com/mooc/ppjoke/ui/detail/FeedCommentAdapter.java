@@ -43,6 +43,10 @@ public class FeedCommentAdapter extends AbsPagedListAdapter<Comment, FeedComment
         });
         mContext = context;
         mInflater = LayoutInflater.from(context);
+        //登录信息是异步读的,读完之前getUserId()返回0,读完后刷新一下"作者"标签和删除按钮
+        if (!UserManager.get().isLoaded()) {
+            UserManager.get().whenLoaded(() -> notifyDataSetChanged());
+        }
     }
 
     @Override
@@ -2,68 +2,43 @@ package com.mooc.ppjoke.ui.detail;
 
 import androidx.annotation.NonNull;
 import androidx.paging.DataSource;
-import androidx.paging.ItemKeyedDataSource;
 
 import com.alibaba.fastjson.TypeReference;
-import com.mooc.libnetwork.ApiResponse;
 import com.mooc.libnetwork.ApiService;
+import com.mooc.libnetwork.Request;
 import com.mooc.ppjoke.model.Comment;
 import com.mooc.ppjoke.ui.AbsViewModel;
+import com.mooc.ppjoke.ui.KeyedPageLoader;
 import com.mooc.ppjoke.ui.login.UserManager;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 
 public class FeedDetailViewModel extends AbsViewModel<Comment> {
     private long itemId;
 
     @Override
     public DataSource createDataSource() {
-        return new DataSource();
+        return new KeyedPageLoader<Integer, Comment>(this, 0) {
+            @Override
+            protected Request createRequest(Integer key, int count) {
+                return ApiService.get("/comment/queryFeedComments")
+                        .addParam("id", key)
+                        .addParam("itemId", itemId)
+                        .addParam("userId", UserManager.get().getUserId())
+                        .addParam("pageCount", count)
+                        .responseType(new TypeReference<ArrayList<Comment>>() {
+                        }.getType());
+            }
+
+            @NonNull
+            @Override
+            public Integer getKey(@NonNull Comment item) {
+                return item.id;
+            }
+        };
     }
 
     public void setItemId(long itemId) {
         this.itemId = itemId;
     }
-
-    class DataSource extends ItemKeyedDataSource<Integer, Comment> {
-
-        @Override
-        public void loadInitial(@NonNull LoadInitialParams<Integer> params, @NonNull LoadInitialCallback<Comment> callback) {
-            loadData(params.requestedInitialKey, params.requestedLoadSize, callback);
-        }
-
-        @Override
-        public void loadAfter(@NonNull LoadParams<Integer> params, @NonNull LoadCallback<Comment> callback) {
-            if (params.key > 0) {
-                loadData(params.key, params.requestedLoadSize, callback);
-            }
-        }
-
-        private void loadData(Integer key, int requestedLoadSize, LoadCallback<Comment> callback) {
-            ApiResponse<List<Comment>> response = ApiService.get("/comment/queryFeedComments")
-                    .addParam("id", key)
-                    .addParam("itemId", itemId)
-                    .addParam("userId", UserManager.get().getUserId())
-                    .addParam("pageCount", requestedLoadSize)
-                    .responseType(new TypeReference<ArrayList<Comment>>() {
-                    }.getType())
-                    .execute();
-
-            List<Comment> list = response.body == null ? Collections.emptyList() : response.body;
-            callback.onResult(list);
-        }
-
-        @Override
-        public void loadBefore(@NonNull LoadParams<Integer> params, @NonNull LoadCallback<Comment> callback) {
-            callback.onResult(Collections.emptyList());
-        }
-
-        @NonNull
-        @Override
-        public Integer getKey(@NonNull Comment item) {
-            return item.id;
-        }
-    }
 }
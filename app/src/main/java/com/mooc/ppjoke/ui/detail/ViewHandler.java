@@ -7,6 +7,9 @@ import androidx.annotation.CallSuper;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.FragmentActivity;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
 import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProviders;
 import androidx.paging.ItemKeyedDataSource;
@@ -14,8 +17,11 @@ import androidx.paging.PagedList;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.alibaba.fastjson.JSONObject;
 import com.mooc.libcommon.utils.PixUtils;
 import com.mooc.libcommon.view.EmptyView;
+import com.mooc.libnetwork.ApiResponse;
+import com.mooc.libnetwork.OutboxManager;
 import com.mooc.ppjoke.R;
 import com.mooc.ppjoke.databinding.LayoutFeedDetailBottomInateractionBinding;
 import com.mooc.ppjoke.model.Comment;
@@ -74,6 +80,29 @@ public abstract class ViewHandler {
                 showCommentDialog();
             }
         });
+
+        //离线时发出的评论,联网送达之后插入列表
+        OutboxManager.OnDeliveredListener deliveredListener = new OutboxManager.OnDeliveredListener() {
+            @Override
+            public void onDelivered(String tag, ApiResponse<Object> response) {
+                if (!(CommentDialog.OUTBOX_TAG_PREFIX + mFeed.itemId).equals(tag)
+                        || !response.success || !(response.body instanceof JSONObject)) {
+                    return;
+                }
+                Comment comment = ((JSONObject) response.body).toJavaObject(Comment.class);
+                handleEmpty(true);
+                listAdapter.addAndRefreshList(comment);
+            }
+        };
+        OutboxManager.addListener(deliveredListener);
+        mActivity.getLifecycle().addObserver(new LifecycleEventObserver() {
+            @Override
+            public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+                if (event == Lifecycle.Event.ON_DESTROY) {
+                    OutboxManager.removeListener(deliveredListener);
+                }
+            }
+        });
     }
 
 
@@ -39,6 +39,9 @@ import com.scwang.smartrefresh.layout.constant.RefreshState;
 import com.scwang.smartrefresh.layout.listener.OnLoadMoreListener;
 import com.scwang.smartrefresh.layout.listener.OnRefreshListener;
 
+import java.util.HashSet;
+import java.util.List;
+
 public class TagFeedListActivity extends AppCompatActivity implements View.OnClickListener, OnRefreshListener, OnLoadMoreListener {
     public static final String KEY_TAG_LIST = "tag_list";
     public static final String KEY_FEED_TYPE = "tag_feed_list";
@@ -170,7 +173,7 @@ public class TagFeedListActivity extends AppCompatActivity implements View.OnCli
                 //这个方法是在我们每提交一次 pagelist对象到adapter 就会触发一次
                 //每调用一次 adpater.submitlist
                 if (previousList != null && currentList != null) {
-                    if (!currentList.containsAll(previousList)) {
+                    if (!containsAllIds(currentList, previousList)) {
                         recyclerView.scrollToPosition(0);
                     }
                 }
@@ -178,6 +181,22 @@ public class TagFeedListActivity extends AppCompatActivity implements View.OnCli
         };
     }
 
+    //containsAll对每个元素都要遍历一遍新列表并调用Feed.equals,这里只按id比
+    private static boolean containsAllIds(List<Feed> currentList, List<Feed> previousList) {
+        HashSet<Integer> ids = new HashSet<>(currentList.size());
+        for (Feed feed : currentList) {
+            if (feed != null) {
+                ids.add(feed.id);
+            }
+        }
+        for (Feed feed : previousList) {
+            if (feed != null && !ids.contains(feed.id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     protected void onPause() {
         super.onPause();
@@ -1,74 +1,44 @@
 package com.mooc.ppjoke.ui.find;
 
 import androidx.annotation.NonNull;
-import androidx.lifecycle.MutableLiveData;
 import androidx.paging.DataSource;
-import androidx.paging.ItemKeyedDataSource;
 
 import com.alibaba.fastjson.TypeReference;
-import com.mooc.libnetwork.ApiResponse;
 import com.mooc.libnetwork.ApiService;
+import com.mooc.libnetwork.Request;
 import com.mooc.ppjoke.model.Feed;
-import com.mooc.ppjoke.model.TagList;
 import com.mooc.ppjoke.ui.AbsViewModel;
+import com.mooc.ppjoke.ui.KeyedPageLoader;
 import com.mooc.ppjoke.ui.login.UserManager;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 
 public class TagFeedListViewModel extends AbsViewModel<Feed> {
     private String feedType;
 
     @Override
     public DataSource createDataSource() {
-        return new DataSource();
+        return new KeyedPageLoader<Integer, Feed>(this, 0) {
+            @Override
+            protected Request createRequest(Integer feedId, int count) {
+                return ApiService.get("/feeds/queryHotFeedsList")
+                        .addParam("userId", UserManager.get().getUserId())
+                        .addParam("pageCount", 10)
+                        .addParam("feedType", feedType)
+                        .addParam("feedId", feedId)
+                        .responseType(new TypeReference<ArrayList<Feed>>() {
+                        }.getType());
+            }
+
+            @NonNull
+            @Override
+            public Integer getKey(@NonNull Feed item) {
+                return item.id;
+            }
+        };
     }
 
     public void setFeedType(String feedType) {
         this.feedType = feedType;
     }
-
-    private class DataSource extends ItemKeyedDataSource<Integer, Feed> {
-
-        @Override
-        public void loadInitial(@NonNull LoadInitialParams<Integer> params, @NonNull LoadInitialCallback<Feed> callback) {
-            loadData(0, callback);
-        }
-
-        @Override
-        public void loadAfter(@NonNull LoadParams<Integer> params, @NonNull LoadCallback<Feed> callback) {
-            loadData(params.key, callback);
-        }
-
-        @Override
-        public void loadBefore(@NonNull LoadParams<Integer> params, @NonNull LoadCallback<Feed> callback) {
-            callback.onResult(Collections.emptyList());
-        }
-
-        @NonNull
-        @Override
-        public Integer getKey(@NonNull Feed item) {
-            return item.id;
-        }
-    }
-
-    private void loadData(Integer feedId, ItemKeyedDataSource.LoadCallback<Feed> callback) {
-        ApiResponse<List<Feed>> response = ApiService.get("/feeds/queryHotFeedsList")
-                .addParam("userId", UserManager.get().getUserId())
-                .addParam("pageCount", 10)
-                .addParam("feedType", feedType)
-                .addParam("feedId", feedId)
-                .responseType(new TypeReference<ArrayList<Feed>>() {
-                }.getType())
-                .execute();
-
-        List<Feed> result = response.body == null ? Collections.emptyList() : response.body;
-        callback.onResult(result);
-
-        if (feedId > 0) {
-            //分页的情况 通知一下 UI 本次加载是否有数据,方便UI 关闭上拉加载动画什么的
-            ((MutableLiveData) getBoundaryPageData()).postValue(result.size() > 0);
-        }
-    }
 }
@@ -1,32 +1,56 @@
 package com.mooc.ppjoke.ui.find;
 
 import androidx.annotation.NonNull;
-import androidx.arch.core.executor.ArchTaskExecutor;
 import androidx.lifecycle.MutableLiveData;
 import androidx.paging.DataSource;
 import androidx.paging.ItemKeyedDataSource;
 
 import com.alibaba.fastjson.TypeReference;
-import com.mooc.libnetwork.ApiResponse;
 import com.mooc.libnetwork.ApiService;
+import com.mooc.libnetwork.Request;
 import com.mooc.ppjoke.model.TagList;
 import com.mooc.ppjoke.ui.AbsViewModel;
+import com.mooc.ppjoke.ui.KeyedPageLoader;
 import com.mooc.ppjoke.ui.login.UserManager;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 public class TagListViewModel extends AbsViewModel<TagList> {
     private String tagType;
-    private int offset;
-    private AtomicBoolean loadAfter = new AtomicBoolean();
+    private volatile int offset;
     private MutableLiveData switchTabLiveData = new MutableLiveData();
 
     @Override
     public DataSource createDataSource() {
-        return new DataSource();
+        return new KeyedPageLoader<Long, TagList>(this, 0L) {
+            @Override
+            protected Request createRequest(Long requestKey, int count) {
+                return ApiService.get("/tag/queryTagList")
+                        .addParam("userId", UserManager.get().getUserId())
+                        .addParam("tagId", requestKey)
+                        .addParam("tagType", tagType)
+                        .addParam("pageCount", 10)
+                        .addParam("offset", requestKey > 0 ? offset : 0)
+                        .responseType(new TypeReference<ArrayList<TagList>>() {
+                        }.getType());
+            }
+
+            @Override
+            protected void onPageLoaded(Long requestKey, List<TagList> page) {
+                if (requestKey > 0) {
+                    offset += page.size();
+                } else {
+                    offset = page.size();
+                }
+            }
+
+            @NonNull
+            @Override
+            public Long getKey(@NonNull TagList item) {
+                return item.tagId;
+            }
+        };
     }
 
     public MutableLiveData getSwitchTabLiveData() {
@@ -37,66 +61,8 @@ public class TagListViewModel extends AbsViewModel<TagList> {
         this.tagType = tagType;
     }
 
-    private class DataSource extends ItemKeyedDataSource<Long, TagList> {
-
-
-        @Override
-        public void loadInitial(@NonNull LoadInitialParams<Long> params, @NonNull LoadInitialCallback<TagList> callback) {
-            loadData(0L, callback);
-        }
-
-        @Override
-        public void loadAfter(@NonNull LoadParams<Long> params, @NonNull LoadCallback<TagList> callback) {
-            loadData(params.key, callback);
-        }
-
-        @Override
-        public void loadBefore(@NonNull LoadParams<Long> params, @NonNull LoadCallback<TagList> callback) {
-            callback.onResult(Collections.emptyList());
-        }
-
-        private void loadData(Long requestKey, LoadCallback<TagList> callback) {
-            if (requestKey > 0) {
-                loadAfter.set(true);
-            }
-            ApiResponse<List<TagList>> response = ApiService.get("/tag/queryTagList")
-                    .addParam("userId", UserManager.get().getUserId())
-                    .addParam("tagId", requestKey)
-                    .addParam("tagType", tagType)
-                    .addParam("pageCount", 10)
-                    .addParam("offset", offset)
-                    .responseType(new TypeReference<ArrayList<TagList>>() {
-                    }.getType())
-                    .execute();
-
-            List<TagList> result = response.body == null ? Collections.emptyList() : response.body;
-            callback.onResult(result);
-            if (requestKey > 0) {
-                loadAfter.set(false);
-                offset += result.size();
-                ((MutableLiveData) getBoundaryPageData()).postValue(result.size() > 0);
-            } else {
-                offset = result.size();
-            }
-        }
-
-        @NonNull
-        @Override
-        public Long getKey(@NonNull TagList item) {
-            return item.tagId;
-        }
-    }
-
+    @SuppressWarnings("unchecked")
     public void loadData(long tagId, ItemKeyedDataSource.LoadCallback callback) {
-        if (tagId <= 0 || loadAfter.get()) {
-            callback.onResult(Collections.emptyList());
-            return;
-        }
-        ArchTaskExecutor.getIOThreadExecutor().execute(new Runnable() {
-            @Override
-            public void run() {
-                ((TagListViewModel.DataSource) getDataSource()).loadData(tagId, callback);
-            }
-        });
+        ((KeyedPageLoader<Long, TagList>) getDataSource()).loadAfter(tagId, callback);
     }
 }
@@ -14,6 +14,7 @@ import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 import com.mooc.libcommon.extention.AbsPagedListAdapter;
 import com.mooc.libcommon.extention.LiveDataBus;
+import com.mooc.libcommon.utils.PixUtils;
 import com.mooc.ppjoke.BR;
 import com.mooc.ppjoke.R;
 import com.mooc.ppjoke.databinding.LayoutFeedTypeImageBinding;
@@ -28,6 +29,10 @@ import com.mooc.ppjoke.view.ListPlayerView;
 
 
 public class FeedAdapter extends AbsPagedListAdapter<Feed, FeedAdapter.ViewHolder> {
+    //窗口模式下被丢弃的Feed是null,用一个空白的占位item,滑到它附近时paging会重新加载
+    private static final int TYPE_PLACEHOLDER = -1;
+    private static final int PLACEHOLDER_HEIGHT_DP = 300;
+
     private final LayoutInflater inflater;
     protected Context mContext;
     protected String mCategory;
@@ -41,7 +46,7 @@ public class FeedAdapter extends AbsPagedListAdapter<Feed, FeedAdapter.ViewHolde
 
             @Override
             public boolean areContentsTheSame(@NonNull Feed oldItem, @NonNull Feed newItem) {
-                return oldItem.equals(newItem);
+                return oldItem.isContentSame(newItem);
             }
         });
 
@@ -53,6 +58,9 @@ public class FeedAdapter extends AbsPagedListAdapter<Feed, FeedAdapter.ViewHolde
     @Override
     public int getItemViewType2(int position) {
         Feed feed = getItem(position);
+        if (feed == null) {
+            return TYPE_PLACEHOLDER;
+        }
         if (feed.itemType == Feed.TYPE_IMAGE_TEXT) {
             return R.layout.layout_feed_type_image;
         } else if (feed.itemType == Feed.TYPE_VIDEO) {
@@ -63,6 +71,11 @@ public class FeedAdapter extends AbsPagedListAdapter<Feed, FeedAdapter.ViewHolde
 
     @Override
     protected ViewHolder onCreateViewHolder2(ViewGroup parent, int viewType) {
+        if (viewType == TYPE_PLACEHOLDER) {
+            View view = new View(mContext);
+            view.setLayoutParams(new RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, PixUtils.dp2px(PLACEHOLDER_HEIGHT_DP)));
+            return new ViewHolder(view, null);
+        }
         ViewDataBinding binding = DataBindingUtil.inflate(inflater, viewType, parent, false);
         return new ViewHolder(binding.getRoot(), binding);
     }
@@ -71,6 +84,9 @@ public class FeedAdapter extends AbsPagedListAdapter<Feed, FeedAdapter.ViewHolde
     @Override
     protected void onBindViewHolder2(ViewHolder holder, int position) {
         final Feed feed = getItem(position);
+        if (feed == null) {
+            return;
+        }
 
         holder.bindData(feed);
 
@@ -5,18 +5,15 @@ import android.util.Log;
 import android.view.View;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import androidx.lifecycle.Observer;
-import androidx.paging.ItemKeyedDataSource;
 import androidx.paging.PagedList;
 import androidx.paging.PagedListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
 import com.mooc.libnavannotation.FragmentDestination;
 import com.mooc.ppjoke.exoplayer.PageListPlayDetector;
 import com.mooc.ppjoke.exoplayer.PageListPlayManager;
 import com.mooc.ppjoke.model.Feed;
 import com.mooc.ppjoke.ui.AbsListFragment;
-import com.mooc.ppjoke.ui.MutablePageKeyedDataSource;
 import com.scwang.smartrefresh.layout.api.RefreshLayout;
-import java.util.List;
 
 
 @FragmentDestination(pageUrl = "main/tabs/home", asStarter = true)
@@ -36,10 +33,14 @@ public class HomeFragment extends AbsListFragment<Feed, HomeViewModel> {
 
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
-        mViewModel.getCacheLiveData().observe(this, new Observer<PagedList<Feed>>() {
+        //缓存换成网络数据时是一次增量差分,新的feed插在最前面。原本停在顶部的话,RecyclerView会保持原来的第一条可见,
+        //新feed被挤到屏幕上方,这里滚回顶部让它们露出来
+        adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
             @Override
-            public void onChanged(PagedList<Feed> feeds) {
-                submitList(feeds);
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                if (positionStart == 0 && !mRecyclerView.canScrollVertically(-1)) {
+                    mRecyclerView.scrollToPosition(0);
+                }
             }
         });
         playDetector = new PageListPlayDetector(this, mRecyclerView);
@@ -70,16 +71,6 @@ public class HomeFragment extends AbsListFragment<Feed, HomeViewModel> {
                 boolean isVideo = feed.itemType == Feed.TYPE_VIDEO;
                 shouldPause = !isVideo;
             }
-
-            //AsyncPagedListDiffer 2次调 submitList, 换pagedList会回调到此处
-            @Override
-            public void onCurrentListChanged(@Nullable PagedList<Feed> previousList, @Nullable PagedList<Feed> currentList) {
-                if (previousList != null && currentList != null) {
-                    if (!currentList.containsAll(previousList)) {
-                        mRecyclerView.scrollToPosition(0);
-                    }
-                }
-            }
         };
     }
 
@@ -96,26 +87,11 @@ public class HomeFragment extends AbsListFragment<Feed, HomeViewModel> {
             finishRefresh(false);
             return;
         }
-        Feed feed = currentList.get(adapter.getItemCount() - 1);
-        mViewModel.loadAfter(feed.id, new ItemKeyedDataSource.LoadCallback<Feed>() {
-            @Override
-            public void onResult(@NonNull List<Feed> data) {
-                PagedList.Config config = currentList.getConfig();
-                if (data != null && data.size() > 0) {
-                    //这里 咱们手动接管 分页数据加载的时候 使用MutableItemKeyedDataSource也是可以的。
-                    //由于当且仅当 paging不再帮我们分页的时候，我们才会接管。所以 就不需要ViewModel中创建的DataSource继续工作了，所以使用
-                    //MutablePageKeyedDataSource也是可以的
-                    MutablePageKeyedDataSource dataSource = new MutablePageKeyedDataSource();
-
-                    //这里要把列表上已经显示的先添加到dataSource.data中
-                    //而后把本次分页回来的数据再添加到dataSource.data中
-                    dataSource.data.addAll(currentList);
-                    dataSource.data.addAll(data);
-                    PagedList pagedList = dataSource.buildNewPagedList(config);
-                    submitList(pagedList);
-                }
-            }
-        });
+        //首页是带占位的窗口列表,不能再用显示中的数据拼一个新的PagedList,那样会丢掉窗口和已丢弃页的位置。
+        //让当前的PagedList自己在末尾触发loadAfter,失败挂起的分页在AbsListFragment里已经先重试过了
+        currentList.loadAround(currentList.size() - 1);
+        //真的到底了paging不会再发起请求,这里直接收起上拉加载
+        finishRefresh(true);
     }
 
 
@@ -1,152 +1,58 @@
 package com.mooc.ppjoke.ui.home;
 
-import android.util.Log;
 import androidx.annotation.NonNull;
-import androidx.arch.core.executor.ArchTaskExecutor;
-import androidx.lifecycle.MutableLiveData;
 import androidx.paging.DataSource;
-import androidx.paging.ItemKeyedDataSource;
-import androidx.paging.PagedList;
 import com.alibaba.fastjson.TypeReference;
-import com.mooc.libnetwork.ApiResponse;
 import com.mooc.libnetwork.ApiService;
-import com.mooc.libnetwork.JsonCallback;
 import com.mooc.libnetwork.Request;
 import com.mooc.ppjoke.ui.AbsViewModel;
 import com.mooc.ppjoke.model.Feed;
-import com.mooc.ppjoke.ui.MutablePageKeyedDataSource;
+import com.mooc.ppjoke.ui.KeyedPageLoader;
 import com.mooc.ppjoke.ui.login.UserManager;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 
 public class HomeViewModel extends AbsViewModel<Feed> {
 
-    private volatile boolean witchCache = true;
-    private MutableLiveData<PagedList<Feed>> cacheLiveData = new MutableLiveData<>();
-    private AtomicBoolean loadAfter = new AtomicBoolean(false);
-    private String mFeedType;
-
-    @Override
-    public DataSource createDataSource() {
-        return new FeedDataSource();
-    }
-
-    public MutableLiveData<PagedList<Feed>> getCacheLiveData() {
-        return cacheLiveData;
-    }
-
-    public void setFeedType(String feedType) {
-        mFeedType = feedType;
-    }
-
-    class FeedDataSource extends ItemKeyedDataSource<Integer, Feed> {
-        @Override
-        public void loadInitial(@NonNull LoadInitialParams<Integer> params, @NonNull LoadInitialCallback<Feed> callback) {
-            loadData(params.requestedInitialKey == null? 0: params.requestedInitialKey, params.requestedLoadSize, callback);
-            witchCache = false;
-        }
-
-        //何时调用loadAdter & loadBefore 不是人为控制, 有点迷, 能够确定AsyncPagedListDiffer#getItem(int) 以及AsyncPagedListDiffer#latchPagedList(..)
-        //触发差分异计算的时候会触发loadAfter / loadBefore ..
-        @Override
-        public void loadAfter(@NonNull LoadParams<Integer> params, @NonNull LoadCallback<Feed> callback) {
-            loadData(params.key, params.requestedLoadSize, callback);
-        }
-
-        @Override
-        public void loadBefore(@NonNull LoadParams<Integer> params, @NonNull LoadCallback<Feed> callback) {
-            callback.onResult(Collections.emptyList());
-        }
-
-        @NonNull
-        @Override
-        public Integer getKey(@NonNull Feed item) {
-            return item.id;
-        }
-    }
+    //首页会被一直往下刷,内存里最多保留这么多条Feed,其余的用null占位
+    private static final int WINDOW_SIZE = 100;
 
+    private String mFeedType;
 
     /**
      * 难点1. ItemKeyedDataSource.loadInitial: 先加载 缓存 再加载 网络, 不能连续两次调 LoadInitialCallback.onResult,
-     *        ==> 我们需要"2"个pagedList, cacheLiveData专门加载缓存, AbsViewModel.pagedList专门加载网络
-     *
-     * @param key
-     * @param count
-     * @param callback
+     *        ==> 缓存先完成loadInitial, 网络数据回来后invalidate, 由新的DataSource交出网络数据, 见KeyedPageLoader
      */
-    private void loadData(int key, int count, ItemKeyedDataSource.LoadCallback<Feed> callback) {
-        if (key > 0) {
-            //key > 0 --> 向后分页
-            loadAfter.set(true);
-        }
-
-        //feeds/queryHotFeedsList
-        Request request = ApiService.get("/feeds/queryHotFeedsList")
-                .addParam("feedType", mFeedType)
-                .addParam("userId", UserManager.get().getUserId())
-                .addParam("feedId", key)
-                .addParam("pageCount", count)
-                .responseType(new TypeReference<ArrayList<Feed>>() {
-                }.getType());
-
-
-        if (witchCache) {
-            request.cacheStrategy(Request.CACHE_ONLY);
-            request.execute(new JsonCallback<List<Feed>>() {
-                @Override
-                public void onCacheSuccess(ApiResponse<List<Feed>> response) {
-                    MutablePageKeyedDataSource dataSource = new MutablePageKeyedDataSource<Feed>();
-                    dataSource.data.addAll(response.body);
-
-                    PagedList pagedList = dataSource.buildNewPagedList(config);
-                    cacheLiveData.postValue(pagedList);
-
-                    // TODO 下面的不可取, 否则接着第二次调callback.onResult(..) 会报 如下: 原因在于连续callback.onResult并不会触发差分计算, 后面差分前面, 导致数据混乱
-                    // java.lang.IllegalStateException: callback.onResult already called, cannot call again.
-                    //if (response.body != null) {
-                    //  callback.onResult(response.body);
-                    // }
-
-                }
-            });
-        }
-
-        try {
-            Request netRequest = witchCache ? request.clone() : request;
-            netRequest.cacheStrategy(key == 0 ? Request.NET_CACHE : Request.NET_ONLY);
-            ApiResponse<List<Feed>> response = netRequest.execute();
-            List<Feed> data = response.body == null ? Collections.emptyList() : response.body;
-
-            callback.onResult(data);
-
-            if (key > 0) {
-                //通过BoundaryPageData发送数据 告诉UI层 是否应该主动关闭上拉加载分页的动画
-                ((MutableLiveData) getBoundaryPageData()).postValue(data.size() > 0);
-                loadAfter.set(false);
-            }
-        } catch (CloneNotSupportedException e) {
-            e.printStackTrace();
-        }
-
-        Log.e("loadData", "loadData: key:" + key);
-
+    public HomeViewModel() {
+        super(WINDOW_SIZE);
+        setCacheFirst(true);
     }
 
+    @Override
+    public DataSource createDataSource() {
+        return new KeyedPageLoader<Integer, Feed>(this, 0) {
+            @Override
+            protected Request createRequest(Integer key, int count) {
+                //feeds/queryHotFeedsList
+                return ApiService.get("/feeds/queryHotFeedsList")
+                        .addParam("feedType", mFeedType)
+                        .addParam("userId", UserManager.get().getUserId())
+                        .addParam("feedId", key)
+                        .addParam("pageCount", count)
+                        .responseType(new TypeReference<ArrayList<Feed>>() {
+                        }.getType());
+            }
 
-    public void loadAfter(int id, ItemKeyedDataSource.LoadCallback<Feed> callback) {
-        if (loadAfter.get()) {
-            callback.onResult(Collections.emptyList());
-            return;
-        }
-        ArchTaskExecutor.getIOThreadExecutor().execute(new Runnable() {
+            @NonNull
             @Override
-            public void run() {
-                loadData(id, config.pageSize, callback);
+            public Integer getKey(@NonNull Feed item) {
+                return item.id;
             }
-        });
+        };
+    }
+
+    public void setFeedType(String feedType) {
+        mFeedType = feedType;
     }
 
 }
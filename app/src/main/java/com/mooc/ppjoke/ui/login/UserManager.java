@@ -15,29 +15,111 @@ import com.mooc.libcommon.global.AppGlobals;
 import com.mooc.libnetwork.ApiResponse;
 import com.mooc.libnetwork.ApiService;
 import com.mooc.libnetwork.JsonCallback;
+import com.mooc.libnetwork.cache.CacheDatabase;
 import com.mooc.libnetwork.cache.CacheManager;
 import com.mooc.ppjoke.model.User;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 public class UserManager {
     private static final String KEY_CACHE_USER = "cache_user";
+    //Application里就开始读了,正常情况下用到时早就读完了,子线程最多等这么久
+    private static final long LOAD_TIMEOUT = 1000;
     private static UserManager mUserManager = new UserManager();
     private MutableLiveData<User> userLiveData;
-    private User mUser;
+    private volatile User mUser;
+    //缓存里的登录信息是否已经读完
+    private volatile boolean mLoaded;
+    private final CountDownLatch mLoadLatch = new CountDownLatch(1);
+    //读缓存期间已经登录或者退出登录了,以那一次为准
+    private boolean mSuperseded;
+    private final List<Runnable> mOnLoaded = new ArrayList<>();
 
     public static UserManager get() {
         return mUserManager;
     }
 
+    //不能在主线程读数据库,交给缓存的查询线程去读
     private UserManager() {
-        User cache = (User) CacheManager.getCache(KEY_CACHE_USER);
-        if (cache != null && cache.expires_time > System.currentTimeMillis()) {
-            mUser = cache;
+        CacheDatabase.getQueryExecutorService().execute(new Runnable() {
+            @Override
+            public void run() {
+                onLoaded(CacheManager.getCache(KEY_CACHE_USER));
+            }
+        });
+        //旧版本保存的登录信息没有固定,补上
+        CacheManager.pin(KEY_CACHE_USER);
+    }
+
+    private void onLoaded(Object cache) {
+        List<Runnable> callbacks;
+        synchronized (this) {
+            if (!mSuperseded && cache instanceof User && ((User) cache).expires_time > System.currentTimeMillis()) {
+                mUser = (User) cache;
+            }
+            mLoaded = true;
+            callbacks = new ArrayList<>(mOnLoaded);
+            mOnLoaded.clear();
+        }
+        mLoadLatch.countDown();
+        User user = mUser;
+        if (user != null && userLiveData != null && userLiveData.hasObservers()) {
+            userLiveData.postValue(user);
         }
+        for (Runnable callback : callbacks) {
+            runOnMainThread(callback);
+        }
+    }
+
+    /**
+     * 缓存里的登录信息读完之后在主线程执行,已经读完的话立即执行。
+     * 主线程上需要判断登录状态、又可能发生在启动早期的地方,先用它等一下,不要阻塞主线程
+     */
+    public void whenLoaded(Runnable runnable) {
+        synchronized (this) {
+            if (!mLoaded) {
+                mOnLoaded.add(runnable);
+                return;
+            }
+        }
+        if (ArchTaskExecutor.getInstance().isMainThread()) {
+            runnable.run();
+        } else {
+            runOnMainThread(runnable);
+        }
+    }
+
+    public boolean isLoaded() {
+        return mLoaded;
+    }
+
+    //子线程(比如拼请求参数时取userId)等缓存读完,超时了也不放弃,读完时照样会填上; 主线程不等
+    private void awaitLoaded() {
+        if (mLoaded || ArchTaskExecutor.getInstance().isMainThread()) {
+            return;
+        }
+        try {
+            mLoadLatch.await(LOAD_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void runOnMainThread(Runnable runnable) {
+        ArchTaskExecutor.getMainThreadExecutor().execute(runnable);
     }
 
     public void save(User user) {
+        synchronized (this) {
+            //新登录的用户为准,缓存里的旧数据不要了
+            mSuperseded = true;
+        }
         mUser = user;
-        CacheManager.save(KEY_CACHE_USER, user);
+        //缓存按大小淘汰时不能把登录状态删掉
+        CacheManager.savePinned(KEY_CACHE_USER, user);
         if (getUserLiveData().hasObservers()) {
             getUserLiveData().postValue(user);
         }
@@ -52,7 +134,12 @@ public class UserManager {
         return getUserLiveData();
     }
 
+    /**
+     * 子线程调用时会等缓存读完; 主线程上缓存还没读完时返回false,不会阻塞。
+     * 主线程上依赖登录状态的地方(绑定条目、拼请求参数)要先判断{@link #isLoaded()},没读完就用{@link #whenLoaded(Runnable)}
+     */
     public boolean isLogin() {
+        awaitLoaded();
         return mUser == null ? false : mUser.expires_time > System.currentTimeMillis();
     }
 
@@ -60,6 +147,9 @@ public class UserManager {
         return isLogin() ? mUser : null;
     }
 
+    /**
+     * 和{@link #isLogin()}一样,主线程上缓存还没读完时返回0
+     */
     public long getUserId() {
         return isLogin() ? mUser.userId : 0;
     }
@@ -105,6 +195,9 @@ public class UserManager {
      * 我们选择第一种,把livedata置为空
      */
     public void logout() {
+        synchronized (this) {
+            mSuperseded = true;
+        }
         CacheManager.delete(KEY_CACHE_USER, mUser);
         mUser = null;
         userLiveData = null;
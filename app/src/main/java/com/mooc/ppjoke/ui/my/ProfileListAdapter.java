@@ -24,6 +24,10 @@ import com.mooc.ppjoke.utils.TimeUtils;
 public class ProfileListAdapter extends FeedAdapter {
     public ProfileListAdapter(Context context, String category) {
         super(context, category);
+        //登录信息是异步读的,读完之前getUserId()返回0,读完后重新判断一下条目类型
+        if (!UserManager.get().isLoaded()) {
+            UserManager.get().whenLoaded(() -> notifyDataSetChanged());
+        }
     }
 
     @Override
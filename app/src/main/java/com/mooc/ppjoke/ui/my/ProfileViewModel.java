@@ -1,19 +1,17 @@
 package com.mooc.ppjoke.ui.my;
 
 import androidx.annotation.NonNull;
-import androidx.lifecycle.MutableLiveData;
-import androidx.paging.ItemKeyedDataSource;
+import androidx.paging.DataSource;
 
 import com.alibaba.fastjson.TypeReference;
-import com.mooc.libnetwork.ApiResponse;
 import com.mooc.libnetwork.ApiService;
+import com.mooc.libnetwork.Request;
 import com.mooc.ppjoke.model.Feed;
 import com.mooc.ppjoke.ui.AbsViewModel;
+import com.mooc.ppjoke.ui.KeyedPageLoader;
 import com.mooc.ppjoke.ui.login.UserManager;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 
 public class ProfileViewModel extends AbsViewModel<Feed> {
     private String profileType;
@@ -21,55 +19,27 @@ public class ProfileViewModel extends AbsViewModel<Feed> {
 
     @Override
     public DataSource createDataSource() {
-        return new DataSource();
+        return new KeyedPageLoader<Integer, Feed>(this, 0) {
+            @Override
+            protected Request createRequest(Integer key, int count) {
+                return ApiService.get("/feeds/queryProfileFeeds")
+                        .addParam("feedId", key)
+                        .addParam("userId", UserManager.get().getUserId())
+                        .addParam("pageCount", 10)
+                        .addParam("profileType", profileType)
+                        .responseType(new TypeReference<ArrayList<Feed>>() {
+                        }.getType());
+            }
+
+            @NonNull
+            @Override
+            public Integer getKey(@NonNull Feed item) {
+                return item.id;
+            }
+        };
     }
 
     public void setProfileType(String tabType) {
         this.profileType = tabType;
     }
-
-    private class DataSource extends ItemKeyedDataSource<Integer, Feed> {
-
-        @Override
-        public void loadInitial(@NonNull LoadInitialParams<Integer> params, @NonNull LoadInitialCallback<Feed> callback) {
-            loadData(params.requestedInitialKey, callback);
-        }
-
-        private void loadData(Integer key, ItemKeyedDataSource.LoadCallback<Feed> callback) {
-            ApiResponse<List<Feed>> response = ApiService.get("/feeds/queryProfileFeeds")
-                    .addParam("feedId", key)
-                    .addParam("userId", UserManager.get().getUserId())
-                    .addParam("pageCount", 10)
-                    .addParam("profileType", profileType)
-                    .responseType(new TypeReference<ArrayList<Feed>>() {
-                    }.getType())
-                    .execute();
-
-            List<Feed> result = response.body == null ? Collections.emptyList() : response.body;
-            callback.onResult(result);
-
-
-            if (key > 0) {
-                //告知UI层 本次分页是否有更多数据被加载回来了,也方便UI层关闭上拉加载的动画
-                ((MutableLiveData) getBoundaryPageData()).postValue(result.size() > 0);
-            }
-
-        }
-
-        @Override
-        public void loadAfter(@NonNull LoadParams<Integer> params, @NonNull LoadCallback<Feed> callback) {
-            loadData(params.key, callback);
-        }
-
-        @Override
-        public void loadBefore(@NonNull LoadParams<Integer> params, @NonNull LoadCallback<Feed> callback) {
-            callback.onResult(Collections.emptyList());
-        }
-
-        @NonNull
-        @Override
-        public Integer getKey(@NonNull Feed item) {
-            return item.id;
-        }
-    }
 }
@@ -1,72 +1,44 @@
 package com.mooc.ppjoke.ui.my;
 
 import androidx.annotation.NonNull;
-import androidx.lifecycle.MutableLiveData;
 import androidx.paging.DataSource;
-import androidx.paging.ItemKeyedDataSource;
 
 import com.alibaba.fastjson.TypeReference;
-import com.mooc.libnetwork.ApiResponse;
 import com.mooc.libnetwork.ApiService;
+import com.mooc.libnetwork.Request;
 import com.mooc.ppjoke.model.Feed;
 import com.mooc.ppjoke.ui.AbsViewModel;
+import com.mooc.ppjoke.ui.KeyedPageLoader;
 import com.mooc.ppjoke.ui.login.UserManager;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 
 public class UserBehaviorViewModel extends AbsViewModel<Feed> {
     private int mBehavior;
 
     @Override
     public DataSource createDataSource() {
-        return new DataSource();
+        return new KeyedPageLoader<Integer, Feed>(this, 0) {
+            @Override
+            protected Request createRequest(Integer feedId, int count) {
+                return ApiService.get("/feeds/queryUserBehaviorList")
+                        .addParam("behavior", mBehavior)
+                        .addParam("feedId", feedId)
+                        .addParam("pageCount", 10)
+                        .addParam("userId", UserManager.get().getUserId())
+                        .responseType(new TypeReference<ArrayList<Feed>>() {
+                        }.getType());
+            }
+
+            @NonNull
+            @Override
+            public Integer getKey(@NonNull Feed item) {
+                return item.id;
+            }
+        };
     }
 
     public void setBehavior(int behavior) {
         mBehavior = behavior;
     }
-
-    class DataSource extends ItemKeyedDataSource<Integer, Feed> {
-
-        @Override
-        public void loadInitial(@NonNull LoadInitialParams<Integer> params, @NonNull LoadInitialCallback<Feed> callback) {
-            loadData(params.requestedInitialKey, callback);
-        }
-
-        @Override
-        public void loadAfter(@NonNull LoadParams<Integer> params, @NonNull LoadCallback<Feed> callback) {
-            loadData(params.key, callback);
-        }
-
-        private void loadData(int feedId, LoadCallback<Feed> callback) {
-            ApiResponse<List<Feed>> response = ApiService.get("/feeds/queryUserBehaviorList")
-                    .addParam("behavior", mBehavior)
-                    .addParam("feedId", feedId)
-                    .addParam("pageCount", 10)
-                    .addParam("userId", UserManager.get().getUserId())
-                    .responseType(new TypeReference<ArrayList<Feed>>() {
-                    }.getType())
-                    .execute();
-
-            List<Feed> result = response.body == null ? Collections.emptyList() : response.body;
-            callback.onResult(result);
-
-            if (feedId > 0) {
-                ((MutableLiveData) getBoundaryPageData()).postValue(result.size() > 0);
-            }
-        }
-
-        @Override
-        public void loadBefore(@NonNull LoadParams<Integer> params, @NonNull LoadCallback<Feed> callback) {
-            callback.onResult(Collections.emptyList());
-        }
-
-        @NonNull
-        @Override
-        public Integer getKey(@NonNull Feed item) {
-            return item.id;
-        }
-    }
 }
@@ -177,6 +177,11 @@ public class PublishActivity extends AppCompatActivity implements View.OnClickLi
     }
 
     private void publishFeed() {
+        //登录信息还没读完时userId是0,等读完再发
+        if (!UserManager.get().isLoaded()) {
+            UserManager.get().whenLoaded(() -> publishFeed());
+            return;
+        }
         ApiService.post("/feeds/publish")
                 .addParam("coverUrl", coverUploadUrl)
                 .addParam("fileUrl", fileUploadUrl)
@@ -61,10 +61,15 @@ public class TagBottomSheetDialogFragment extends BottomSheetDialogFragment {
     }
 
     private void queryTagList() {
+        //登录信息还没读完时userId是0,查出来的关注状态不对,等读完再查
+        if (!UserManager.get().isLoaded()) {
+            UserManager.get().whenLoaded(() -> queryTagList());
+            return;
+        }
         ApiService.get("/tag/queryTagList")
                 .addParam("userId", UserManager.get().getUserId())
                 .addParam("pageCount", 100)
-                .addParam("tagId", 0).execute(new JsonCallback<List<TagList>>() {
+                .addParam("tagId", 0).execute(this, new JsonCallback<List<TagList>>() {
             @Override
             public void onSuccess(ApiResponse<List<TagList>> response) {
                 super.onSuccess(response);
@@ -1,84 +1,154 @@
 package com.mooc.ppjoke.utils;
 
 import android.content.res.AssetManager;
+import android.util.Log;
 
 import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.TypeReference;
 import com.mooc.libcommon.global.AppGlobals;
 import com.mooc.ppjoke.model.BottomBar;
-import com.mooc.ppjoke.model.Destination;
 import com.mooc.ppjoke.model.SofaTab;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+/**
+ * assets下的几个页面配置
+ * <p>
+ * {@link #preload()}在Application里把三个配置并行读取、解析好,get方法直接等对应的Future;
+ * 页面导航信息已经由NavProcessor生成为NavRegistry,不在这里;
+ * 没有preload过的话仍然在调用线程上现读现解析
+ */
 public class AppConfig {
-    private static HashMap<String, Destination> sDestConfig;
+    private static final String TAG = "AppConfig";
+
     private static BottomBar sBottomBar;
     private static SofaTab sSofaTab, sFindTabConfig;
 
-    public static HashMap<String, Destination> getDestConfig() {
-        if (sDestConfig == null) {
-            String content = parseFile("destination.json");
-            sDestConfig = JSON.parseObject(content, new TypeReference<HashMap<String, Destination>>() {
-            });
+    private static Future<BottomBar> sBottomBarFuture;
+    private static Future<SofaTab> sSofaTabFuture, sFindTabFuture;
+
+    private static final Callable<BottomBar> sBottomBarLoader = new Callable<BottomBar>() {
+        @Override
+        public BottomBar call() {
+            String content = parseFile("main_tabs_config.json");
+            return JSON.parseObject(content, BottomBar.class);
+        }
+    };
+
+    private static final Callable<SofaTab> sSofaTabLoader = new Callable<SofaTab>() {
+        @Override
+        public SofaTab call() {
+            return parseTabs("sofa_tabs_config.json");
+        }
+    };
+
+    private static final Callable<SofaTab> sFindTabLoader = new Callable<SofaTab>() {
+        @Override
+        public SofaTab call() {
+            return parseTabs("find_tabs_config.json");
         }
-        return sDestConfig;
+    };
+
+    /**
+     * 在后台线程并行读取、解析全部配置,需要在主线程调用,且早于任何get方法
+     */
+    public static void preload() {
+        if (sBottomBarFuture != null) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        sBottomBarFuture = executor.submit(traced("bottomBar", sBottomBarLoader));
+        sSofaTabFuture = executor.submit(traced("sofaTab", sSofaTabLoader));
+        sFindTabFuture = executor.submit(traced("findTab", sFindTabLoader));
+        //任务执行完线程就退出
+        executor.shutdown();
     }
 
     public static BottomBar getBottomBarConfig() {
         if (sBottomBar == null) {
-            String content = parseFile("main_tabs_config.json");
-            sBottomBar = JSON.parseObject(content, BottomBar.class);
+            sBottomBar = await("bottomBar", sBottomBarFuture, sBottomBarLoader);
         }
         return sBottomBar;
     }
 
     public static SofaTab getSofaTabConfig() {
         if (sSofaTab == null) {
-            String content = parseFile("sofa_tabs_config.json");
-            sSofaTab = JSON.parseObject(content, SofaTab.class);
-            Collections.sort(sSofaTab.tabs, new Comparator<SofaTab.Tabs>() {
-                @Override
-                public int compare(SofaTab.Tabs o1, SofaTab.Tabs o2) {
-                    return o1.index < o2.index ? -1 : 1;
-                }
-            });
+            sSofaTab = await("sofaTab", sSofaTabFuture, sSofaTabLoader);
         }
         return sSofaTab;
     }
 
     public static SofaTab getFindTabConfig() {
         if (sFindTabConfig == null) {
-            String content = parseFile("find_tabs_config.json");
-            sFindTabConfig = JSON.parseObject(content, SofaTab.class);
-            Collections.sort(sFindTabConfig.tabs, new Comparator<SofaTab.Tabs>() {
-                @Override
-                public int compare(SofaTab.Tabs o1, SofaTab.Tabs o2) {
-                    return o1.index < o2.index ? -1 : 1;
-                }
-            });
+            sFindTabConfig = await("findTab", sFindTabFuture, sFindTabLoader);
         }
         return sFindTabConfig;
     }
 
+    //读取+解析的耗时
+    private static <T> Callable<T> traced(final String name, final Callable<T> loader) {
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                long begin = StartupTrace.now();
+                T result = loader.call();
+                StartupTrace.record("config " + name, begin);
+                return result;
+            }
+        };
+    }
+
+    //等preload的结果,记下调用线程被卡住的时间; 没有preload或者preload失败就在当前线程再加载一次
+    private static <T> T await(String name, Future<T> future, Callable<T> loader) {
+        if (future != null) {
+            long begin = StartupTrace.now();
+            try {
+                return future.get();
+            } catch (Exception e) {
+                Log.e(TAG, "await: " + name, e);
+            } finally {
+                StartupTrace.record("await " + name, begin);
+            }
+        }
+        try {
+            return traced(name, loader).call();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static SofaTab parseTabs(String fileName) {
+        String content = parseFile(fileName);
+        SofaTab tab = JSON.parseObject(content, SofaTab.class);
+        Collections.sort(tab.tabs, new Comparator<SofaTab.Tabs>() {
+            @Override
+            public int compare(SofaTab.Tabs o1, SofaTab.Tabs o2) {
+                return o1.index < o2.index ? -1 : 1;
+            }
+        });
+        return tab;
+    }
+
     private static String parseFile(String fileName) {
         //app下面与res同级的assets文件夹
         AssetManager assets = AppGlobals.getApplication().getAssets();
         InputStream is = null;
-        BufferedReader br = null;
-        StringBuilder builder = new StringBuilder();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
         try {
             is = assets.open(fileName);
-            br = new BufferedReader(new InputStreamReader(is));
-            String line = null;
-            while ((line = br.readLine()) != null) {
-                builder.append(line);
+            //整块读出来,不再按行拼接
+            byte[] buffer = new byte[8 * 1024];
+            int count;
+            while ((count = is.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
             }
         } catch (IOException e) {
             e.printStackTrace();
@@ -87,14 +157,10 @@ public class AppConfig {
                 if (is != null) {
                     is.close();
                 }
-                if (br != null) {
-                    br.close();
-                }
             } catch (Exception e) {
 
             }
         }
-
-        return builder.toString();
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
     }
 }
@@ -11,17 +11,15 @@ import androidx.navigation.NavGraphNavigator;
 import androidx.navigation.NavigatorProvider;
 import androidx.navigation.fragment.FragmentNavigator;
 
+import com.mooc.generated.NavRegistry;
 import com.mooc.libcommon.global.AppGlobals;
 import com.mooc.ppjoke.navigator.FixFragmentNavigator;
-import com.mooc.ppjoke.model.Destination;
-
-import java.util.HashMap;
-import java.util.Iterator;
 
 public class NavGraphBuilder {
     public static void build(FragmentActivity activity,
                              FragmentManager childFragmentManager,
                              NavController controller, int containerId) {
+        long begin = StartupTrace.now();
 
         NavigatorProvider provider = controller.getNavigatorProvider();
 
@@ -36,33 +34,30 @@ public class NavGraphBuilder {
         ActivityNavigator activityNavigator = provider.getNavigator(ActivityNavigator.class);
 
 
-        HashMap<String, Destination> destConfig = AppConfig.getDestConfig();
-        Iterator<Destination> iterator = destConfig.values().iterator();
-
-        while (iterator.hasNext()) {
-            Destination node = iterator.next();
-            if (node.isFragment) {
+        //页面信息由NavProcessor编译期生成,不用再读取、解析destination.json
+        for (int i = 0; i < NavRegistry.COUNT; i++) {
+            int id = NavRegistry.IDS[i];
+            if (NavRegistry.IS_FRAGMENT[i]) {
                 //createDestination()返回的destination的mNavigatorName是fragmentNavigator的@Navigator.Name注解中声明的名称
                 FixFragmentNavigator.Destination destination = fragmentNavigator.createDestination();
                 //destination必须有className, 否则不清楚具体类是什么
-                destination.setId(node.id);
-                destination.setClassName(node.className);
-                destination.addDeepLink(node.pageUrl);
+                destination.setId(id);
+                destination.setClassName(NavRegistry.CLASS_NAMES[i]);
+                destination.addDeepLink(NavRegistry.PAGE_URLS[i]);
                 navGraph.addDestination(destination);
             } else {
                 ActivityNavigator.Destination destination = activityNavigator.createDestination();
-                destination.setId(node.id);
-                destination.setComponentName(new ComponentName(AppGlobals.getApplication().getPackageName(), node.className));
-                destination.addDeepLink(node.pageUrl);
+                destination.setId(id);
+                destination.setComponentName(new ComponentName(AppGlobals.getApplication().getPackageName(), NavRegistry.CLASS_NAMES[i]));
+                destination.addDeepLink(NavRegistry.PAGE_URLS[i]);
                 navGraph.addDestination(destination);
             }
-
-            //给APP页面导航结果图 设置一个默认的展示页的id
-            if (node.asStarter) {
-                navGraph.setStartDestination(node.id);
-            }
         }
 
+        //给APP页面导航结果图 设置一个默认的展示页的id
+        navGraph.setStartDestination(NavRegistry.STARTER_ID);
+
         controller.setGraph(navGraph);
+        StartupTrace.record("navGraph", begin);
     }
 }
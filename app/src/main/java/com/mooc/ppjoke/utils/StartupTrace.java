@@ -0,0 +1,46 @@
+package com.mooc.ppjoke.utils;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.LinkedHashMap;
+
+/**
+ * 冷启动各阶段的耗时统计
+ * <p>
+ * 从{@link #start()}(Application.onCreate的第一行)开始计时,
+ * {@link #record(String, long)}记录某一阶段的耗时和它结束时距离启动的时间,同时打印日志
+ */
+public class StartupTrace {
+    private static final String TAG = "StartupTrace";
+
+    private static long sStartTime;
+    //阶段名 -> {耗时, 结束时距离启动的时间}, 单位毫秒, 按记录顺序排列
+    private static final LinkedHashMap<String, long[]> sPhases = new LinkedHashMap<>();
+
+    public static void start() {
+        sStartTime = SystemClock.elapsedRealtime();
+    }
+
+    public static long now() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * @param begin 这一阶段开始的时间,取自{@link #now()}
+     */
+    public static void record(String phase, long begin) {
+        long end = now();
+        long[] times = {end - begin, end - sStartTime};
+        synchronized (sPhases) {
+            sPhases.put(phase, times);
+        }
+        Log.d(TAG, phase + ": " + times[0] + "ms, at " + times[1] + "ms");
+    }
+
+    public static LinkedHashMap<String, long[]> getPhases() {
+        synchronized (sPhases) {
+            return new LinkedHashMap<>(sPhases);
+        }
+    }
+}
@@ -12,9 +12,9 @@ import com.google.android.material.bottomnavigation.BottomNavigationItemView;
 import com.google.android.material.bottomnavigation.BottomNavigationMenuView;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.android.material.bottomnavigation.LabelVisibilityMode;
+import com.mooc.generated.NavRegistry;
 import com.mooc.ppjoke.R;
 import com.mooc.ppjoke.model.BottomBar;
-import com.mooc.ppjoke.model.Destination;
 import com.mooc.ppjoke.utils.AppConfig;
 
 import java.util.List;
@@ -128,9 +128,9 @@ public class AppBottomBar extends BottomNavigationView {
     }
 
     private int getItemId(String pageUrl) {
-        Destination destination = AppConfig.getDestConfig().get(pageUrl);
-        if (destination == null)
+        int index = NavRegistry.indexOfPageUrl(pageUrl);
+        if (index < 0)
             return -1;
-        return destination.id;
+        return NavRegistry.IDS[index];
     }
 }
\ No newline at end of file
@@ -0,0 +1,208 @@
+package com.mooc.ppjoke.model;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Feed.equals和isContentSame都用到了TextUtils,用Robolectric跑
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, application = Application.class)
+public class FeedTest {
+
+    //每次都新建对象,和两次请求解析出来的一样, 内容相同但不是同一个对象
+    private static Feed createFeed(int id, boolean parsed) {
+        Feed feed = new Feed();
+        feed.id = id;
+        feed.itemId = 6739143063064549000L + id;
+        feed.itemType = Feed.TYPE_VIDEO;
+        feed.createTime = 1569079017L + id;
+        feed.duration = 299.435;
+        feed.feeds_text = new String("当中国地图出来那一幕，我眼泪都出来了！" + id);
+        feed.authorId = 3223400206308231L;
+        feed.width = 640;
+        feed.height = 368;
+        feed.url = new String("https://pipijoke.oss-cn-hangzhou.aliyuncs.com/" + feed.itemId + ".mp4");
+        feed.cover = new String("https://pipijoke.oss-cn-hangzhou.aliyuncs.com/" + feed.itemId + ".jpg");
+
+        User author = new User();
+        author.userId = feed.authorId;
+        author.name = new String("user" + id);
+        author.avatar = new String("https://pipijoke.oss-cn-hangzhou.aliyuncs.com/avatar.jpg");
+        author.description = new String("这个人很懒,什么都没有留下");
+        feed.author = author;
+
+        Comment comment = new Comment();
+        comment.id = id;
+        comment.itemId = feed.itemId;
+        comment.commentId = id * 10L;
+        comment.commentText = new String("太震撼了！" + id);
+        comment.author = author;
+        comment.ugc = new Ugc();
+        feed.topComment = comment;
+
+        feed.ugc = new Ugc();
+        feed.ugc.likeCount = id;
+        feed.ugc.commentCount = 3;
+        if (parsed) {
+            feed.onParsed();
+        }
+        return feed;
+    }
+
+    @Test
+    public void sameContent() {
+        assertTrue(createFeed(1, true).isContentSame(createFeed(1, true)));
+        //没有经过解析(比如反序列化出来的)的,用到时再算hash
+        assertTrue(createFeed(1, true).isContentSame(createFeed(1, false)));
+        assertTrue(createFeed(1, false).isContentSame(createFeed(1, true)));
+    }
+
+    @Test
+    public void ownFieldChanged() {
+        Feed changed = createFeed(1, false);
+        changed.feeds_text = "改过的";
+        changed.onParsed();
+        assertFalse(createFeed(1, true).isContentSame(changed));
+    }
+
+    @Test
+    public void nestedObjectChanged() {
+        Feed liked = createFeed(1, true);
+        liked.getUgc().setHasLiked(true);
+        assertFalse(createFeed(1, true).isContentSame(liked));
+
+        Feed renamed = createFeed(1, true);
+        renamed.author.name = "改名了";
+        assertFalse(createFeed(1, true).isContentSame(renamed));
+
+        Feed noComment = createFeed(1, true);
+        noComment.topComment = null;
+        assertFalse(createFeed(1, true).isContentSame(noComment));
+        assertFalse(noComment.isContentSame(createFeed(1, true)));
+    }
+
+    /**
+     * hash相同但字段不同(碰撞)时仍然要判为不同: id的系数是31^12, itemType的系数是31^10,
+     * id加1、itemType减31^2, hash不变
+     */
+    @Test
+    public void hashCollisionFallsBackToFields() {
+        Feed feed = createFeed(1, true);
+        Feed collision = createFeed(1, false);
+        collision.id += 1;
+        collision.itemType -= 31 * 31;
+        collision.onParsed();
+        assertFalse(feed.isContentSame(collision));
+    }
+
+    private static List<Feed> createList(int size, int changedEvery) {
+        List<Feed> list = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            Feed feed = createFeed(i, false);
+            if (changedEvery > 0 && i % changedEvery == 0) {
+                feed.ugc.likeCount++;
+                feed.feeds_text = feed.feeds_text + "!";
+            }
+            feed.onParsed();
+            list.add(feed);
+        }
+        return list;
+    }
+
+    private static DiffUtil.Callback diffCallback(final List<Feed> oldList, final List<Feed> newList, final boolean byHash) {
+        return new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldList.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return newList.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                return oldList.get(oldItemPosition).id == newList.get(newItemPosition).id;
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                Feed oldItem = oldList.get(oldItemPosition);
+                Feed newItem = newList.get(newItemPosition);
+                return byHash ? oldItem.isContentSame(newItem) : oldItem.equals(newItem);
+            }
+        };
+    }
+
+    private static int countChanges(DiffUtil.DiffResult result) {
+        final int[] changed = new int[1];
+        result.dispatchUpdatesTo(new androidx.recyclerview.widget.ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+            }
+
+            @Override
+            public void onChanged(int position, int count, Object payload) {
+                changed[0] += count;
+            }
+        });
+        return changed[0];
+    }
+
+    /**
+     * 两个500条的列表,其中1/10的内容有变化,对比按hash和按equals差分的耗时
+     */
+    @Test
+    public void benchmarkDiff500Items() {
+        final int size = 500;
+        final int changedEvery = 10;
+        List<Feed> oldList = createList(size, 0);
+        List<Feed> newList = createList(size, changedEvery);
+
+        assertEquals(size / changedEvery, countChanges(DiffUtil.calculateDiff(diffCallback(oldList, newList, true))));
+        assertEquals(size / changedEvery, countChanges(DiffUtil.calculateDiff(diffCallback(oldList, newList, false))));
+
+        final int warmup = 20;
+        final int rounds = 100;
+        for (int i = 0; i < warmup; i++) {
+            DiffUtil.calculateDiff(diffCallback(oldList, newList, true));
+            DiffUtil.calculateDiff(diffCallback(oldList, newList, false));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            DiffUtil.calculateDiff(diffCallback(oldList, newList, true));
+        }
+        long byHash = (System.nanoTime() - start) / rounds;
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            DiffUtil.calculateDiff(diffCallback(oldList, newList, false));
+        }
+        long byEquals = (System.nanoTime() - start) / rounds;
+        System.out.println(String.format("diff %d feeds: content hash %d us, equals %d us",
+                size, byHash / 1000, byEquals / 1000));
+    }
+}
@@ -0,0 +1,265 @@
+package com.mooc.ppjoke.ui;
+
+import android.app.Application;
+
+import com.alibaba.fastjson.JSONObject;
+import com.mooc.libnetwork.ApiService;
+import com.mooc.libnetwork.NetworkProfile;
+import com.mooc.libnetwork.Request;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 用MockWebServer充当服务端,校验InteractionQueue的合并、对齐和回滚
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, application = Application.class)
+public class InteractionQueueTest {
+    private static final long FLUSH_DELAY = 500;
+    //慢响应的延迟,保证它比后发的请求晚返回
+    private static final long SLOW_DELAY = 800;
+
+    private static long sItemId;
+
+    private MockWebServer mServer;
+    //下标是请求参数里的目标状态,值是服务端对它的响应
+    private final List<MockResponse> mResponses = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new MockWebServer();
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                int to = Integer.parseInt(request.getRequestUrl().queryParameter("to"));
+                synchronized (mResponses) {
+                    return mResponses.get(to);
+                }
+            }
+        });
+        mServer.start();
+        HttpUrl url = mServer.url("/serverdemo");
+        NetworkProfile profile = new NetworkProfile();
+        profile.prewarm = false;
+        ApiService.init(url.toString(), null, profile);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.shutdown();
+    }
+
+    private void respond(int to, MockResponse response) {
+        synchronized (mResponses) {
+            while (mResponses.size() <= to) {
+                mResponses.add(null);
+            }
+            mResponses.set(to, response);
+        }
+    }
+
+    private static MockResponse state(int state) {
+        return new MockResponse().setBody("{\"status\":200,\"message\":\"\",\"data\":{\"data\":{\"state\":" + state + "}}}");
+    }
+
+    private static MockResponse emptyBody() {
+        return new MockResponse().setBody("{\"status\":200,\"message\":\"\",\"data\":{\"data\":null}}");
+    }
+
+    private static MockResponse failure() {
+        return new MockResponse().setResponseCode(500).setBody("server error");
+    }
+
+    private static void flush() {
+        ShadowLooper.idleMainLooper(FLUSH_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    private static void waitUntil(Callable<Boolean> condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.call()) {
+            assertTrue("timeout", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+            ShadowLooper.runUiThreadTasks();
+        }
+    }
+
+    //等所有回调都执行完,包括已经过时的慢响应
+    private static void drain(long millis) throws Exception {
+        long end = System.currentTimeMillis() + millis;
+        while (System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+            ShadowLooper.runUiThreadTasks();
+        }
+    }
+
+    /**
+     * 0/1开关,请求参数带上目标状态,服务端按它返回
+     */
+    private static class Switch extends InteractionQueue.Interaction {
+        final int[] value;
+        final List<String> errors;
+
+        Switch(long itemId, int[] value, List<String> errors) {
+            super(itemId, "test");
+            this.value = value;
+            this.errors = errors;
+        }
+
+        @Override
+        protected int state() {
+            return value[0];
+        }
+
+        @Override
+        protected int next(int state) {
+            return 1 - state;
+        }
+
+        @Override
+        protected void applyState(int state) {
+            value[0] = state;
+        }
+
+        @Override
+        protected Request createRequest(int from, int to) {
+            return ApiService.get("/toggle").addParam("to", to);
+        }
+
+        @Override
+        protected int parseState(int from, int to, JSONObject body) {
+            return body.getIntValue("state");
+        }
+
+        @Override
+        protected void onError(String message) {
+            errors.add(message);
+        }
+    }
+
+    @Test
+    public void clicksBackToInitialSendNothing() throws Exception {
+        long itemId = ++sItemId;
+        int[] value = {0};
+        List<String> errors = new ArrayList<>();
+        long coalesced = InteractionQueue.getCoalescedCount();
+
+        InteractionQueue.toggle(new Switch(itemId, value, errors));
+        InteractionQueue.toggle(new Switch(itemId, value, errors));
+        flush();
+        drain(200);
+
+        assertEquals(0, value[0]);
+        assertEquals(0, mServer.getRequestCount());
+        //第二次点击被合并,flush时又和最初状态一致
+        assertEquals(coalesced + 2, InteractionQueue.getCoalescedCount());
+    }
+
+    @Test
+    public void emptyBodyAlignsToTarget() throws Exception {
+        long itemId = ++sItemId;
+        final int[] value = {0};
+        List<String> errors = new ArrayList<>();
+        respond(1, emptyBody().setHeadersDelay(200, TimeUnit.MILLISECONDS));
+
+        InteractionQueue.toggle(new Switch(itemId, value, errors));
+        flush();
+        mServer.takeRequest();
+        //请求期间本地状态被别处改掉了,服务端成功但没有返回状态,以提交的目标状态为准
+        value[0] = 0;
+        waitUntil(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return value[0] == 1;
+            }
+        });
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void staleResponseDoesNotOverwriteNewerSubmit() throws Exception {
+        long itemId = ++sItemId;
+        final int[] value = {0};
+        List<String> errors = new ArrayList<>();
+        //A: 0->1, 返回得慢; B: 1->0, 先返回
+        respond(1, state(1).setHeadersDelay(SLOW_DELAY, TimeUnit.MILLISECONDS));
+        respond(0, state(0));
+
+        InteractionQueue.toggle(new Switch(itemId, value, errors));
+        flush();
+        mServer.takeRequest();
+        assertEquals(1, value[0]);
+
+        InteractionQueue.toggle(new Switch(itemId, value, errors));
+        flush();
+        mServer.takeRequest();
+        assertEquals(0, value[0]);
+
+        drain(SLOW_DELAY + 500);
+        assertEquals(0, value[0]);
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void staleFailureReportsErrorWithoutRollback() throws Exception {
+        long itemId = ++sItemId;
+        final int[] value = {0};
+        final List<String> errors = new ArrayList<>();
+        respond(1, failure().setHeadersDelay(SLOW_DELAY, TimeUnit.MILLISECONDS));
+        respond(0, state(0));
+
+        InteractionQueue.toggle(new Switch(itemId, value, errors));
+        flush();
+        mServer.takeRequest();
+        InteractionQueue.toggle(new Switch(itemId, value, errors));
+        flush();
+        mServer.takeRequest();
+
+        waitUntil(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return errors.size() == 1;
+            }
+        });
+        assertEquals(0, value[0]);
+    }
+
+    @Test
+    public void latestFailureRollsBack() throws Exception {
+        long itemId = ++sItemId;
+        final int[] value = {0};
+        final List<String> errors = new ArrayList<>();
+        respond(1, failure());
+
+        InteractionQueue.toggle(new Switch(itemId, value, errors));
+        assertEquals(1, value[0]);
+        flush();
+        waitUntil(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return errors.size() == 1;
+            }
+        });
+        assertEquals(0, value[0]);
+        assertEquals(1, mServer.getRequestCount());
+    }
+}
@@ -0,0 +1,205 @@
+package com.mooc.ppjoke.ui;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.paging.DataSource;
+import androidx.paging.PagedList;
+
+import com.alibaba.fastjson.TypeReference;
+import com.mooc.libnetwork.ApiService;
+import com.mooc.libnetwork.NetworkProfile;
+import com.mooc.libnetwork.Request;
+import com.mooc.ppjoke.model.Feed;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 用MockWebServer充当服务端,模拟一次往下刷2000条帖子的浏览,对比窗口模式和普通模式下PagedList持有的帖子数和堆占用
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, application = Application.class)
+public class WindowedPagingTest {
+    private static final int TOTAL = 2000;
+    private static final int WINDOW_SIZE = 100;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private MockWebServer mServer;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new MockWebServer();
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                int feedId = Integer.parseInt(request.getRequestUrl().queryParameter("feedId"));
+                int pageCount = Integer.parseInt(request.getRequestUrl().queryParameter("pageCount"));
+                return new MockResponse().setBody(page(feedId, pageCount));
+            }
+        });
+        mServer.start();
+        NetworkProfile profile = new NetworkProfile();
+        profile.prewarm = false;
+        ApiService.init(mServer.url("/serverdemo").toString(), null, profile);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.shutdown();
+    }
+
+    //id从1开始连续编号, feedId之后的pageCount条
+    private static String page(int feedId, int pageCount) {
+        StringBuilder builder = new StringBuilder("{\"status\":200,\"message\":\"\",\"data\":{\"data\":[");
+        int end = Math.min(TOTAL, feedId + pageCount);
+        for (int id = feedId + 1; id <= end; id++) {
+            if (id > feedId + 1) {
+                builder.append(',');
+            }
+            builder.append("{\"id\":").append(id)
+                    .append(",\"itemId\":").append(6739143063064549000L + id)
+                    .append(",\"itemType\":2,\"createTime\":1569079017,\"duration\":299.435")
+                    .append(",\"feeds_text\":\"当中国地图出来那一幕，我眼泪都出来了！太震撼了！\"")
+                    .append(",\"url\":\"https://pipijoke.oss-cn-hangzhou.aliyuncs.com/6739143063064549643.mp4\"")
+                    .append(",\"cover\":\"https://pipijoke.oss-cn-hangzhou.aliyuncs.com/6739143063064549643.jpg\"")
+                    .append(",\"width\":640,\"height\":368")
+                    .append(",\"author\":{\"userId\":3223400206308231,\"name\":\"user").append(id)
+                    .append("\",\"avatar\":\"https://pipijoke.oss-cn-hangzhou.aliyuncs.com/avatar.jpg\",\"description\":\"")
+                    .append("这个人很懒,什么都没有留下").append("\"}")
+                    .append(",\"ugc\":{\"likeCount\":").append(id).append(",\"commentCount\":3,\"shareCount\":1}")
+                    .append('}');
+        }
+        return builder.append("]}}").toString();
+    }
+
+    private static class FeedViewModel extends AbsViewModel<Feed> {
+        FeedViewModel(int maxSize) {
+            super(maxSize);
+        }
+
+        @Override
+        public DataSource createDataSource() {
+            return new KeyedPageLoader<Integer, Feed>(this, 0) {
+                @Override
+                protected Request createRequest(Integer key, int count) {
+                    return ApiService.get("/feeds/queryHotFeedsList")
+                            .addParam("feedId", key)
+                            .addParam("pageCount", count)
+                            .responseType(new TypeReference<ArrayList<Feed>>() {
+                            }.getType());
+                }
+
+                @NonNull
+                @Override
+                public Integer getKey(@NonNull Feed item) {
+                    return item.id;
+                }
+            };
+        }
+    }
+
+    //分页都在当前线程同步完成
+    private static PagedList<Feed> build(FeedViewModel viewModel) {
+        return new PagedList.Builder<Integer, Feed>(viewModel.createDataSource(), viewModel.config)
+                .setNotifyExecutor(DIRECT)
+                .setFetchExecutor(DIRECT)
+                .setInitialKey(0)
+                .build();
+    }
+
+    //像RecyclerView一样一条一条往下滑到底
+    private static void scrollToEnd(PagedList<Feed> list) {
+        for (int i = 0; i < list.size(); i++) {
+            list.loadAround(i);
+        }
+    }
+
+    private static int loadedCount(PagedList<Feed> list) {
+        int count = 0;
+        for (Feed feed : list.snapshot()) {
+            if (feed != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Test
+    public void windowKeepsBoundedItems() {
+        PagedList<Feed> list = build(new FeedViewModel(WINDOW_SIZE));
+        scrollToEnd(list);
+
+        assertEquals(TOTAL, list.size());
+        assertTrue("loaded " + loadedCount(list), loadedCount(list) <= WINDOW_SIZE + list.getConfig().pageSize);
+        assertNotNull(list.get(TOTAL - 1));
+        assertEquals(TOTAL, list.get(TOTAL - 1).id);
+    }
+
+    @Test
+    public void scrollingBackReloadsDroppedPages() {
+        PagedList<Feed> list = build(new FeedViewModel(WINDOW_SIZE));
+        scrollToEnd(list);
+        for (int i = list.size() - 1; i >= 0; i--) {
+            list.loadAround(i);
+        }
+        //丢弃的页都按原来的key重新加载回来了,位置没有错乱
+        Feed first = list.get(0);
+        assertNotNull(first);
+        assertEquals(1, first.id);
+        assertEquals(TOTAL, list.size());
+        assertTrue(loadedCount(list) <= WINDOW_SIZE + list.getConfig().pageSize);
+    }
+
+    /**
+     * 对比同样的浏览过程结束时两种模式的堆占用
+     */
+    @Test
+    public void benchmarkHeapAgainstUnbounded() {
+        long base = usedHeap();
+        PagedList<Feed> unbounded = build(new FeedViewModel(0));
+        scrollToEnd(unbounded);
+        long unboundedHeap = usedHeap() - base;
+        assertEquals(TOTAL, loadedCount(unbounded));
+        int unboundedSize = unbounded.size();
+        unbounded = null;
+
+        base = usedHeap();
+        PagedList<Feed> windowed = build(new FeedViewModel(WINDOW_SIZE));
+        scrollToEnd(windowed);
+        long windowedHeap = usedHeap() - base;
+
+        System.out.println(String.format("%d feeds: unbounded %d items %d KB, windowed %d items %d KB",
+                unboundedSize, TOTAL, unboundedHeap / 1024, loadedCount(windowed), windowedHeap / 1024));
+    }
+}
@@ -0,0 +1,20 @@
+package com.mooc.libnavannotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Target;
+
+/**
+ * 被标记的实体类 会由JsonModelProcessor在编译期生成fastjson的反序列化器,
+ * 运行时不再需要反射去收集字段信息。只处理public的非static、非final字段
+ */
+@Target(ElementType.TYPE)
+public @interface JsonModel {
+
+    /**
+     * 实体类实现这个接口的话,生成的反序列化器在所有字段赋值完之后回调{@link #onParsed()},
+     * 可以在解析线程上预先算好一些派生数据
+     */
+    interface OnParsed {
+        void onParsed();
+    }
+}
@@ -0,0 +1,293 @@
+package com.mooc.libnavcompiler;
+
+import com.google.auto.service.AutoService;
+import com.mooc.libnavannotation.JsonModel;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedSourceVersion;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * 为{@link JsonModel}标记的实体类生成fastjson的ObjectDeserializer,
+ * 并生成一个注册表JsonModelRegistry,启动时一次性注册到ParserConfig。
+ * <p>
+ * 生成的反序列化器直接按字段名switch赋值,不需要fastjson在第一次解析时反射构建JavaBeanInfo,
+ * 嵌套的实体类型交给parser.parseObject(Class),同样会命中生成的反序列化器。
+ * 带泛型参数的字段(比如List&lt;Comment&gt;)按完整的泛型类型解析,类型在生成的类里只构建一次
+ */
+@AutoService(Processor.class)
+@SupportedSourceVersion(SourceVersion.RELEASE_8)
+@SupportedAnnotationTypes({"com.mooc.libnavannotation.JsonModel"})
+public class JsonModelProcessor extends AbstractProcessor {
+    private static final String REGISTRY_PACKAGE = "com.mooc.generated";
+    private static final String REGISTRY_NAME = "JsonModelRegistry";
+    private static final String DESERIALIZER_SUFFIX = "_Deserializer";
+    private static final String ON_PARSED = "com.mooc.libnavannotation.JsonModel.OnParsed";
+
+    private Messager messager;
+    private Filer filer;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        messager = processingEnv.getMessager();
+        filer = processingEnv.getFiler();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Set<? extends Element> elements = roundEnv.getElementsAnnotatedWith(JsonModel.class);
+        if (elements.isEmpty()) {
+            return true;
+        }
+
+        List<TypeElement> models = new ArrayList<>();
+        for (Element element : elements) {
+            TypeElement typeElement = (TypeElement) element;
+            try {
+                writeDeserializer(typeElement);
+                models.add(typeElement);
+            } catch (IOException e) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "生成反序列化器失败:" + e.getMessage(), element);
+            }
+        }
+
+        try {
+            writeRegistry(models);
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "生成" + REGISTRY_NAME + "失败:" + e.getMessage());
+        }
+        return true;
+    }
+
+    private void writeDeserializer(TypeElement model) throws IOException {
+        String packageName = getPackageName(model);
+        String modelName = model.getQualifiedName().toString();
+        String simpleName = model.getSimpleName() + DESERIALIZER_SUFFIX;
+
+        //先生成字段的读取,泛型字段需要的Type常量要放在类的开头
+        StringBuilder types = new StringBuilder();
+        StringBuilder cases = new StringBuilder();
+        for (Element member : model.getEnclosedElements()) {
+            if (member.getKind() != ElementKind.FIELD) {
+                continue;
+            }
+            Set<Modifier> modifiers = member.getModifiers();
+            if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.FINAL)) {
+                continue;
+            }
+            VariableElement field = (VariableElement) member;
+            String name = field.getSimpleName().toString();
+            cases.append("                case \"").append(name).append("\":\n")
+                    .append(readField(field, "bean." + name, types))
+                    .append("                    break;\n");
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("package ").append(packageName).append(";\n\n")
+                .append("import com.alibaba.fastjson.parser.DefaultJSONParser;\n")
+                .append("import com.alibaba.fastjson.parser.JSONLexer;\n")
+                .append("import com.alibaba.fastjson.parser.JSONToken;\n")
+                .append("import com.alibaba.fastjson.parser.deserializer.ObjectDeserializer;\n")
+                .append("import com.alibaba.fastjson.util.TypeUtils;\n")
+                .append("import java.lang.reflect.Type;\n\n")
+                .append("/**\n * 由JsonModelProcessor生成,请勿修改\n */\n")
+                .append("public final class ").append(simpleName).append(" implements ObjectDeserializer {\n\n");
+        if (types.length() > 0) {
+            builder.append(types).append("\n");
+        }
+        builder.append("    @Override\n")
+                .append("    @SuppressWarnings(\"unchecked\")\n")
+                .append("    public <T> T deserialze(DefaultJSONParser parser, Type type, Object fieldName) {\n")
+                .append("        JSONLexer lexer = parser.lexer;\n")
+                .append("        if (lexer.token() == JSONToken.NULL) {\n")
+                .append("            lexer.nextToken(JSONToken.COMMA);\n")
+                .append("            return null;\n")
+                .append("        }\n")
+                .append("        ").append(modelName).append(" bean = new ").append(modelName).append("();\n")
+                .append("        parser.accept(JSONToken.LBRACE);\n")
+                .append("        while (true) {\n")
+                .append("            if (lexer.token() == JSONToken.RBRACE) {\n")
+                .append("                lexer.nextToken(JSONToken.COMMA);\n")
+                .append("                break;\n")
+                .append("            }\n")
+                .append("            if (lexer.token() == JSONToken.COMMA) {\n")
+                .append("                lexer.nextToken();\n")
+                .append("                continue;\n")
+                .append("            }\n")
+                .append("            String key = lexer.stringVal();\n")
+                .append("            lexer.nextTokenWithColon();\n")
+                .append("            Object value;\n")
+                .append("            switch (key) {\n")
+                .append(cases)
+                .append("                default:\n")
+                .append("                    parser.parse();\n")
+                .append("                    break;\n")
+                .append("            }\n")
+                .append("        }\n");
+        if (isOnParsed(model)) {
+            builder.append("        bean.onParsed();\n");
+        }
+        builder.append("        return (T) bean;\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public int getFastMatchToken() {\n")
+                .append("        return JSONToken.LBRACE;\n")
+                .append("    }\n")
+                .append("}\n");
+
+        write(packageName + "." + simpleName, builder.toString(), model);
+    }
+
+    //基本类型遇到null时保持字段默认值
+    private String readField(VariableElement field, String target, StringBuilder types) {
+        TypeMirror type = field.asType();
+        TypeKind kind = type.getKind();
+        String cast = null;
+        switch (kind) {
+            case INT:
+                cast = "TypeUtils.castToInt(value)";
+                break;
+            case LONG:
+                cast = "TypeUtils.castToLong(value)";
+                break;
+            case DOUBLE:
+                cast = "TypeUtils.castToDouble(value)";
+                break;
+            case FLOAT:
+                cast = "TypeUtils.castToFloat(value)";
+                break;
+            case BOOLEAN:
+                cast = "TypeUtils.castToBoolean(value)";
+                break;
+            case SHORT:
+                cast = "TypeUtils.castToShort(value)";
+                break;
+            case BYTE:
+                cast = "TypeUtils.castToByte(value)";
+                break;
+            case CHAR:
+                cast = "TypeUtils.castToChar(value)";
+                break;
+            default:
+                break;
+        }
+        if (cast != null) {
+            return "                    value = parser.parse();\n"
+                    + "                    if (value != null) {\n"
+                    + "                        " + target + " = " + cast + ";\n"
+                    + "                    }\n";
+        }
+        if (hasTypeVariable(type)) {
+            //类型变量在生成的代码里无法确定具体类型,按擦除后的类型解析会悄悄变成JSONObject,直接报错
+            messager.printMessage(Diagnostic.Kind.ERROR, "@JsonModel的字段不能使用类型变量:" + type, field);
+            return "";
+        }
+        if (isParameterized(type)) {
+            //带泛型参数的按完整类型解析,否则List<Comment>里的元素会变成JSONObject
+            String constant = "TYPE_" + field.getSimpleName();
+            types.append("    private static final Type ").append(constant)
+                    .append(" = new com.alibaba.fastjson.TypeReference<").append(type).append(">() {\n")
+                    .append("    }.getType();\n");
+            return "                    " + target + " = parser.parseObject(" + constant + ");\n";
+        }
+        String erased = processingEnv.getTypeUtils().erasure(type).toString();
+        return "                    " + target + " = parser.parseObject(" + erased + ".class);\n";
+    }
+
+    private boolean isParameterized(TypeMirror type) {
+        if (type.getKind() == TypeKind.ARRAY) {
+            return isParameterized(((ArrayType) type).getComponentType());
+        }
+        return type.getKind() == TypeKind.DECLARED && !((DeclaredType) type).getTypeArguments().isEmpty();
+    }
+
+    private boolean hasTypeVariable(TypeMirror type) {
+        switch (type.getKind()) {
+            case TYPEVAR:
+                return true;
+            case ARRAY:
+                return hasTypeVariable(((ArrayType) type).getComponentType());
+            case WILDCARD:
+                WildcardType wildcard = (WildcardType) type;
+                return wildcard.getExtendsBound() != null && hasTypeVariable(wildcard.getExtendsBound())
+                        || wildcard.getSuperBound() != null && hasTypeVariable(wildcard.getSuperBound());
+            case DECLARED:
+                for (TypeMirror argument : ((DeclaredType) type).getTypeArguments()) {
+                    if (hasTypeVariable(argument)) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private void writeRegistry(List<TypeElement> models) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        builder.append("package ").append(REGISTRY_PACKAGE).append(";\n\n")
+                .append("import com.alibaba.fastjson.parser.ParserConfig;\n\n")
+                .append("/**\n * 由JsonModelProcessor生成,请勿修改\n */\n")
+                .append("public final class ").append(REGISTRY_NAME).append(" {\n\n")
+                .append("    private ").append(REGISTRY_NAME).append("() {\n")
+                .append("    }\n\n")
+                .append("    public static void register(ParserConfig config) {\n");
+        for (TypeElement model : models) {
+            String modelName = model.getQualifiedName().toString();
+            String deserializer = getPackageName(model) + "." + model.getSimpleName() + DESERIALIZER_SUFFIX;
+            builder.append("        config.putDeserializer(").append(modelName).append(".class, new ")
+                    .append(deserializer).append("());\n");
+        }
+        builder.append("    }\n")
+                .append("}\n");
+
+        write(REGISTRY_PACKAGE + "." + REGISTRY_NAME, builder.toString(), models.toArray(new Element[0]));
+    }
+
+    private boolean isOnParsed(TypeElement model) {
+        TypeElement onParsed = processingEnv.getElementUtils().getTypeElement(ON_PARSED);
+        return onParsed != null && processingEnv.getTypeUtils().isAssignable(model.asType(), onParsed.asType());
+    }
+
+    private String getPackageName(TypeElement element) {
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(element);
+        return packageElement.getQualifiedName().toString();
+    }
+
+    private void write(String className, String content, Element... originatingElements) throws IOException {
+        JavaFileObject sourceFile = filer.createSourceFile(className, originatingElements);
+        Writer writer = sourceFile.openWriter();
+        try {
+            writer.write(content);
+            writer.flush();
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -10,9 +10,12 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.annotation.Annotation;
-import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Set;
 
 import javax.annotation.processing.AbstractProcessor;
@@ -28,6 +31,7 @@ import javax.lang.model.element.Element;
 import javax.lang.model.element.TypeElement;
 import javax.tools.Diagnostic;
 import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
 import javax.tools.StandardLocation;
 
 /**
@@ -40,6 +44,8 @@ import javax.tools.StandardLocation;
  * SupportedAnnotationTypes:声明该注解处理器想要处理那些注解
  *
  * 生成json文件是通过make project构建群工程实现的
+ * <p>
+ * 同时生成com.mooc.generated.NavRegistry,把页面信息写成静态数组,运行时不需要再读取、解析destination.json
  */
 @AutoService(Processor.class)
 @SupportedSourceVersion(SourceVersion.RELEASE_8)
@@ -48,6 +54,8 @@ public class NavProcessor extends AbstractProcessor {
     private Messager messager;
     private Filer filer;
     private static final String OUTPUT_FILE_NAME = "destination.json";
+    private static final String REGISTRY_PACKAGE = "com.mooc.generated";
+    private static final String REGISTRY_NAME = "NavRegistry";
 
     @Override
     public synchronized void init(ProcessingEnvironment processingEnv) {
@@ -71,6 +79,14 @@ public class NavProcessor extends AbstractProcessor {
             handleDestination(fragmentElements, FragmentDestination.class, destMap);
             handleDestination(activityElements, ActivityDestination.class, destMap);
 
+            List<Element> elements = new ArrayList<>(fragmentElements);
+            elements.addAll(activityElements);
+            try {
+                writeRegistry(destMap, elements);
+            } catch (IOException e) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "生成" + REGISTRY_NAME + "失败:" + e.getMessage());
+            }
+
             //app/src/main/assets
             FileOutputStream fos = null;
             OutputStreamWriter writer = null;
@@ -184,4 +200,81 @@ public class NavProcessor extends AbstractProcessor {
             }
         }
     }
+
+    //按pageUrl排序,保证每次生成的内容一样
+    private void writeRegistry(HashMap<String, JSONObject> destMap, List<Element> elements) throws IOException {
+        List<String> pageUrls = new ArrayList<>(destMap.keySet());
+        Collections.sort(pageUrls);
+
+        StringBuilder ids = new StringBuilder();
+        StringBuilder classNames = new StringBuilder();
+        StringBuilder urls = new StringBuilder();
+        StringBuilder needLogin = new StringBuilder();
+        StringBuilder asStarter = new StringBuilder();
+        StringBuilder isFragment = new StringBuilder();
+        int starterId = 0;
+        for (String pageUrl : pageUrls) {
+            JSONObject object = destMap.get(pageUrl);
+            String separator = ids.length() == 0 ? "" : ", ";
+            ids.append(separator).append(object.getIntValue("id"));
+            classNames.append(separator).append(literal(object.getString("className")));
+            urls.append(separator).append(literal(pageUrl));
+            needLogin.append(separator).append(object.getBooleanValue("needLogin"));
+            asStarter.append(separator).append(object.getBooleanValue("asStarter"));
+            isFragment.append(separator).append(object.getBooleanValue("isFragment"));
+            if (object.getBooleanValue("asStarter")) {
+                starterId = object.getIntValue("id");
+            }
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("package ").append(REGISTRY_PACKAGE).append(";\n\n")
+                .append("/**\n * 由NavProcessor生成,请勿修改\n * <p>\n * 所有页面按pageUrl排序,同一个下标在各个数组里对应同一个页面\n */\n")
+                .append("public final class ").append(REGISTRY_NAME).append(" {\n\n")
+                .append("    public static final int COUNT = ").append(pageUrls.size()).append(";\n")
+                .append("    //作为首页第一个展示的页面的id,没有时为0\n")
+                .append("    public static final int STARTER_ID = ").append(starterId).append(";\n\n")
+                .append("    public static final int[] IDS = {").append(ids).append("};\n")
+                .append("    public static final String[] CLASS_NAMES = {").append(classNames).append("};\n")
+                .append("    public static final String[] PAGE_URLS = {").append(urls).append("};\n")
+                .append("    public static final boolean[] NEED_LOGIN = {").append(needLogin).append("};\n")
+                .append("    public static final boolean[] AS_STARTER = {").append(asStarter).append("};\n")
+                .append("    public static final boolean[] IS_FRAGMENT = {").append(isFragment).append("};\n\n")
+                .append("    private ").append(REGISTRY_NAME).append("() {\n")
+                .append("    }\n\n")
+                .append("    //页面很少,顺序查找就够了,找不到返回-1\n")
+                .append("    public static int indexOfId(int id) {\n")
+                .append("        for (int i = 0; i < COUNT; i++) {\n")
+                .append("            if (IDS[i] == id) {\n")
+                .append("                return i;\n")
+                .append("            }\n")
+                .append("        }\n")
+                .append("        return -1;\n")
+                .append("    }\n\n")
+                .append("    public static int indexOfPageUrl(String pageUrl) {\n")
+                .append("        for (int i = 0; i < COUNT; i++) {\n")
+                .append("            if (PAGE_URLS[i].equals(pageUrl)) {\n")
+                .append("                return i;\n")
+                .append("            }\n")
+                .append("        }\n")
+                .append("        return -1;\n")
+                .append("    }\n")
+                .append("}\n");
+
+        JavaFileObject sourceFile = filer.createSourceFile(REGISTRY_PACKAGE + "." + REGISTRY_NAME, elements.toArray(new Element[0]));
+        Writer writer = sourceFile.openWriter();
+        try {
+            writer.write(builder.toString());
+            writer.flush();
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String literal(String value) {
+        if (value == null) {
+            return "null";
+        }
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
 }
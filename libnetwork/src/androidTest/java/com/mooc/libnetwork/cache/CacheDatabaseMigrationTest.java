@@ -0,0 +1,86 @@
+package com.mooc.libnetwork.cache;
+
+import android.database.Cursor;
+
+import androidx.room.migration.Migration;
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 用libnetwork/schemas下导出的每个版本的schema校验CacheDatabase的迁移,
+ * 迁移之后的表结构必须和该版本实体类生成的完全一致
+ */
+@RunWith(AndroidJUnit4.class)
+public class CacheDatabaseMigrationTest {
+    private static final String TEST_DB = "cache-migration-test";
+    private static final int LATEST_VERSION = 6;
+
+    private static final Migration[] ALL_MIGRATIONS = {
+            CacheDatabase.sMigration1_2,
+            CacheDatabase.sMigration2_3,
+            CacheDatabase.sMigration3_4,
+            CacheDatabase.sMigration4_5,
+            CacheDatabase.sMigration5_6
+    };
+
+    @Rule
+    public MigrationTestHelper helper = new MigrationTestHelper(InstrumentationRegistry.getInstrumentation(),
+            CacheDatabase.class.getCanonicalName(), new FrameworkSQLiteOpenHelperFactory());
+
+    @Test
+    public void migrateEachVersion() throws IOException {
+        for (int version = 1; version < LATEST_VERSION; version++) {
+            String name = TEST_DB + version;
+            helper.createDatabase(name, version).close();
+            helper.runMigrationsAndValidate(name, version + 1, true, ALL_MIGRATIONS).close();
+        }
+    }
+
+    @Test
+    public void migrate1ToLatestKeepsData() throws IOException {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 1);
+        db.execSQL("insert into cache (`key`, data) values ('user', x'010203')");
+        db.close();
+
+        db = helper.runMigrationsAndValidate(TEST_DB, LATEST_VERSION, true, ALL_MIGRATIONS);
+        Cursor cursor = db.query("select size, createdAt, lastAccess, expires, pinned from cache where `key` = 'user'");
+        try {
+            assertTrue(cursor.moveToFirst());
+            //老数据的大小按data算, 时间按升级时间算, 不会过期, 也没有固定
+            assertEquals(3, cursor.getLong(0));
+            assertTrue(cursor.getLong(1) > 0);
+            assertTrue(cursor.getLong(2) > 0);
+            assertEquals(0, cursor.getLong(3));
+            assertEquals(0, cursor.getInt(4));
+        } finally {
+            cursor.close();
+        }
+        db.close();
+    }
+
+    @Test
+    public void migrate3To4CreatesEmptyOutbox() throws IOException {
+        helper.createDatabase(TEST_DB, 3).close();
+        SupportSQLiteDatabase db = helper.runMigrationsAndValidate(TEST_DB, 4, true, ALL_MIGRATIONS);
+        Cursor cursor = db.query("select count(*) from outbox");
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(0, cursor.getInt(0));
+        } finally {
+            cursor.close();
+        }
+        db.close();
+    }
+}
@@ -0,0 +1,66 @@
+package com.mooc.libnetwork.cache;
+
+import android.os.StrictMode;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 主线程上开启StrictMode(读写磁盘直接杀进程),CacheManager的同步读取只能查内存,不能碰数据库
+ */
+@RunWith(AndroidJUnit4.class)
+public class CacheManagerStrictModeTest {
+
+    private static void runOnMainThreadStrict(final Runnable runnable) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                StrictMode.ThreadPolicy old = StrictMode.getThreadPolicy();
+                StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                        .detectDiskReads()
+                        .detectDiskWrites()
+                        .penaltyLog()
+                        .penaltyDeath()
+                        .build());
+                try {
+                    runnable.run();
+                } finally {
+                    StrictMode.setThreadPolicy(old);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void mainThreadMissDoesNotQueryDatabase() {
+        runOnMainThreadStrict(new Runnable() {
+            @Override
+            public void run() {
+                assertNull(CacheManager.getCache("strict_mode_missing_" + System.nanoTime()));
+            }
+        });
+    }
+
+    @Test
+    public void mainThreadSaveThenReadHitsMemory() throws Exception {
+        final String key = "strict_mode_saved_" + System.nanoTime();
+        runOnMainThreadStrict(new Runnable() {
+            @Override
+            public void run() {
+                CacheManager.save(key, "value");
+                assertEquals("value", CacheManager.getCache(key));
+            }
+        });
+        //子线程读到的是同一份数据
+        assertEquals("value", CacheManager.getCacheAsync(key).get(5, TimeUnit.SECONDS));
+        CacheManager.delete(key, "value");
+    }
+}
@@ -5,4 +5,8 @@ public class ApiResponse<T> {
     public int status;
     public String message;
     public T body;
+    //没能发到服务端,已经存入发件箱等待重放
+    public boolean queued;
+    //请求确定没有发到服务端(连接失败、域名解析失败),重发不会让服务端处理两次
+    public boolean notSent;
 }
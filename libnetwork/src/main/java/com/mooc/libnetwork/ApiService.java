@@ -1,11 +1,23 @@
 package com.mooc.libnetwork;
 
+import android.annotation.SuppressLint;
+import android.net.Uri;
+
+import androidx.arch.core.executor.ArchTaskExecutor;
+
+import com.mooc.libnetwork.metrics.DecodedSizeInterceptor;
+import com.mooc.libnetwork.metrics.MetricsEventListener;
+import com.mooc.libnetwork.metrics.NetworkMetrics;
+
 import java.lang.reflect.ParameterizedType;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.HostnameVerifier;
@@ -15,13 +27,17 @@ import javax.net.ssl.SSLSession;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.logging.HttpLoggingInterceptor;
 
 public class ApiService {
     protected static OkHttpClient okHttpClient;
     protected static String sBaseUrl;
     protected static Convert sConvert;
+    private static final DnsCache sDnsCache = new DnsCache(0);
 
     static {
         HttpLoggingInterceptor interceptor = new HttpLoggingInterceptor();
@@ -60,7 +76,13 @@ public class ApiService {
 //            });
 
 
-            okHttpClient = new OkHttpClient.Builder()
+            //并发由RequestScheduler按优先级控制,这里放宽OkHttp自己的限制,免得高优先级的请求在Dispatcher里排队
+            Dispatcher dispatcher = new Dispatcher();
+            dispatcher.setMaxRequests(64);
+            dispatcher.setMaxRequestsPerHost(32);
+
+            OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                    .dispatcher(dispatcher)
                     .sslSocketFactory(ssl.getSocketFactory(), (X509TrustManager) trustManagers[0])
                     .hostnameVerifier(new HostnameVerifier() {
                         @Override
@@ -68,11 +90,16 @@ public class ApiService {
                             return true;
                         }
                     })
-                    .readTimeout(5, TimeUnit.SECONDS)
-                    .writeTimeout(5, TimeUnit.SECONDS)
-                    .connectTimeout(5, TimeUnit.SECONDS)
-                    .addInterceptor(interceptor)
-                    .build();
+                    .dns(sDnsCache)
+                    //各阶段耗时、body大小按接口统计,见NetworkMetrics
+                    .eventListenerFactory(MetricsEventListener.FACTORY)
+                    .addInterceptor(new DecodedSizeInterceptor());
+            //BODY级别会把每个响应完整读进内存再打印,release包里不加
+            if (BuildConfig.DEBUG) {
+                builder.addInterceptor(interceptor);
+            }
+            okHttpClient = builder.build();
+            applyProfile(new NetworkProfile());
 
         } catch (NoSuchAlgorithmException e) {
             e.printStackTrace();
@@ -83,11 +110,63 @@ public class ApiService {
     }
 
     public static void init(String baseUrl, Convert convert) {
+        init(baseUrl, convert, null);
+    }
+
+    /**
+     * @param profile 连接池、超时、HTTP/2、DNS缓存等参数, null使用默认值
+     */
+    public static void init(String baseUrl, Convert convert, NetworkProfile profile) {
         sBaseUrl = baseUrl;
+        NetworkMetrics.setBasePath(Uri.parse(baseUrl).getPath());
         if (convert == null) {
             convert = new JsonConvert();
         }
         sConvert = convert;
+        if (profile == null) {
+            profile = new NetworkProfile();
+        } else {
+            applyProfile(profile);
+        }
+        if (profile.prewarm) {
+            prewarm(baseUrl);
+        }
+    }
+
+    private static void applyProfile(NetworkProfile profile) {
+        List<Protocol> protocols = profile.http2
+                ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)
+                : Collections.singletonList(Protocol.HTTP_1_1);
+        sDnsCache.setTtl(profile.dnsCacheTtlMillis);
+        //newBuilder()出来的client和原来的共享Dispatcher,所以RequestScheduler的并发控制不受影响
+        okHttpClient = okHttpClient.newBuilder()
+                .connectTimeout(profile.connectTimeoutMillis, TimeUnit.MILLISECONDS)
+                .readTimeout(profile.readTimeoutMillis, TimeUnit.MILLISECONDS)
+                .writeTimeout(profile.writeTimeoutMillis, TimeUnit.MILLISECONDS)
+                .connectionPool(new ConnectionPool(profile.maxIdleConnections, profile.keepAliveMinutes, TimeUnit.MINUTES))
+                .protocols(protocols)
+                .build();
+    }
+
+    //后台解析host并建立一条连接放进连接池, 失败了也没关系, 第一个真正的请求会再来一次
+    @SuppressLint("RestrictedApi")
+    private static void prewarm(final String baseUrl) {
+        ArchTaskExecutor.getIOThreadExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                String host = Uri.parse(baseUrl).getHost();
+                if (host == null) {
+                    return;
+                }
+                try {
+                    sDnsCache.lookup(host);
+                    okhttp3.Request request = new okhttp3.Request.Builder().url(baseUrl).head().build();
+                    okHttpClient.newCall(request).execute().close();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        });
     }
 
     public static <T> GetRequest<T> get(String url) {
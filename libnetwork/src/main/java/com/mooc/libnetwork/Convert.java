@@ -1,7 +1,11 @@
 package com.mooc.libnetwork;
 
+import java.io.Reader;
 import java.lang.reflect.Type;
 
 public interface Convert<T> {
     T convert(String response, Type type);
+
+    //直接从响应流里解析,不需要先把整个body读成String
+    T convert(Reader reader, Type type);
 }
@@ -0,0 +1,66 @@
+package com.mooc.libnetwork;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.Dns;
+
+/**
+ * 带TTL的内存DNS缓存
+ * <p>
+ * 系统的解析结果缓存时间很短,而且每次都是同步阻塞的,列表翻页时每个请求都可能重新解析一次。
+ * 过期之后重新解析失败的话,继续使用过期的结果,总比直接失败好
+ */
+class DnsCache implements Dns {
+    private final ConcurrentHashMap<String, Entry> mEntries = new ConcurrentHashMap<>();
+    private volatile long mTtlMillis;
+
+    private static class Entry {
+        final List<InetAddress> addresses;
+        final long expiresAt;
+
+        Entry(List<InetAddress> addresses, long expiresAt) {
+            this.addresses = addresses;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    DnsCache(long ttlMillis) {
+        mTtlMillis = ttlMillis;
+    }
+
+    void setTtl(long ttlMillis) {
+        mTtlMillis = ttlMillis;
+        if (ttlMillis <= 0) {
+            mEntries.clear();
+        }
+    }
+
+    @NotNull
+    @Override
+    public List<InetAddress> lookup(@NotNull String hostname) throws UnknownHostException {
+        long ttl = mTtlMillis;
+        if (ttl <= 0) {
+            return Dns.SYSTEM.lookup(hostname);
+        }
+        Entry entry = mEntries.get(hostname);
+        long now = System.currentTimeMillis();
+        if (entry != null && entry.expiresAt > now) {
+            return entry.addresses;
+        }
+        try {
+            List<InetAddress> addresses = Dns.SYSTEM.lookup(hostname);
+            mEntries.put(hostname, new Entry(addresses, now + ttl));
+            return addresses;
+        } catch (UnknownHostException e) {
+            if (entry != null) {
+                return entry.addresses;
+            }
+            throw e;
+        }
+    }
+}
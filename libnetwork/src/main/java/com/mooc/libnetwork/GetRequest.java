@@ -7,9 +7,14 @@ public class GetRequest<T> extends Request<T, GetRequest> {
 
     @Override
     protected okhttp3.Request generateRequest(okhttp3.Request.Builder builder) {
-        String url = UrlCreator.createUrlFromParams(mUrl, params);
+        String url = getEncodedUrl();
         //builder.get().url(url) => 指明get方法并且url是***
         okhttp3.Request request = builder.get().url(url).build();
         return request;
     }
+
+    @Override
+    protected boolean canCoalesce() {
+        return true;
+    }
 }
@@ -1,20 +1,60 @@
 package com.mooc.libnetwork;
 
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.JSONReader;
+import com.alibaba.fastjson.parser.JSONToken;
 
+import java.io.Reader;
+import java.io.StringReader;
 import java.lang.reflect.Type;
 
 public class JsonConvert implements Convert {
+    private static final String KEY_DATA = "data";
+
     //默认的Json转 Java Bean的转换器
     @Override
     public Object convert(String response, Type type) {
-        JSONObject jsonObject = JSON.parseObject(response);      //fastjson: parseObject(String) ==> 指定类型解析
-        JSONObject data = jsonObject.getJSONObject("data");
-        if (data != null) {
-            Object data1 = data.get("data");
-            return JSON.parseObject(data1.toString(), type);     //parseObject(String, Type) ==> 指定类型解析
+        return convert(new StringReader(response), type);
+    }
+
+    /**
+     * 响应的格式是 {"status":200, "message":"", "data":{"data": ...}}
+     * <p>
+     * 流式地走一遍外层结构,其他字段直接跳过,读到data.data时直接按type解析,
+     * 不再构造整棵JSONObject,也不用toString()之后再解析第二遍
+     */
+    @Override
+    public Object convert(Reader reader, Type type) {
+        JSONReader jsonReader = new JSONReader(reader);
+        try {
+            Object result = null;
+            jsonReader.startObject();
+            while (jsonReader.hasNext()) {
+                String key = jsonReader.readString();
+                if (KEY_DATA.equals(key) && jsonReader.peek() == JSONToken.LBRACE) {
+                    result = readData(jsonReader, type);
+                } else {
+                    jsonReader.readObject();
+                }
+            }
+            jsonReader.endObject();
+            return result;
+        } finally {
+            jsonReader.close();
+        }
+    }
+
+    private Object readData(JSONReader jsonReader, Type type) {
+        Object result = null;
+        jsonReader.startObject();
+        while (jsonReader.hasNext()) {
+            String key = jsonReader.readString();
+            if (KEY_DATA.equals(key)) {
+                result = jsonReader.readObject(type);     //readObject(Type) ==> 指定类型解析
+            } else {
+                jsonReader.readObject();
+            }
         }
-        return null;
+        jsonReader.endObject();
+        return result;
     }
 }
@@ -0,0 +1,23 @@
+package com.mooc.libnetwork;
+
+/**
+ * OkHttpClient的调优参数, 通过{@link ApiService#init(String, Convert, NetworkProfile)}生效
+ */
+public class NetworkProfile {
+    public long connectTimeoutMillis = 5000;
+    public long readTimeoutMillis = 5000;
+    public long writeTimeoutMillis = 5000;
+
+    //连接池最多保留的空闲连接数,以及空闲连接的存活时间
+    public int maxIdleConnections = 8;
+    public long keepAliveMinutes = 5;
+
+    //https的host通过ALPN协商HTTP/2,同一个host的请求复用一条连接; 明文http始终是HTTP/1.1
+    public boolean http2 = true;
+
+    //DNS解析结果的缓存时间,<=0 不缓存
+    public long dnsCacheTtlMillis = 5 * 60 * 1000;
+
+    //init时在后台预先解析baseUrl的host并建立一条连接,首个请求不用再等DNS和建连
+    public boolean prewarm = true;
+}
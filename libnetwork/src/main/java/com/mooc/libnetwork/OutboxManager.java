@@ -0,0 +1,126 @@
+package com.mooc.libnetwork;
+
+import android.annotation.SuppressLint;
+
+import androidx.arch.core.executor.ArchTaskExecutor;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.mooc.libcommon.global.AppGlobals;
+import com.mooc.libnetwork.cache.CacheDatabase;
+import com.mooc.libnetwork.cache.Outbox;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 离线发件箱
+ * <p>
+ * 通过{@link Request#outbox(String)}标记的写请求,如果确定没有发到服务端(连接失败、域名解析失败),会被存进CacheDatabase的outbox表,
+ * 等到有网络时由{@link OutboxWorker}按入队顺序重放,失败则按指数退避重试。
+ * 重放的结果通过{@link OnDeliveredListener}按tag通知业务方,由业务方和服务端的结果对齐
+ */
+public class OutboxManager {
+    private static final String WORK_NAME = "outbox";
+
+    private static final CopyOnWriteArrayList<OnDeliveredListener> sListeners = new CopyOnWriteArrayList<>();
+
+    public interface OnDeliveredListener {
+        /**
+         * 主线程回调
+         *
+         * @param tag      入队时的tag
+         * @param response success=true 服务端已经处理; false 服务端拒绝了这次请求或者重试次数用完,不会再重放
+         */
+        void onDelivered(String tag, ApiResponse<Object> response);
+    }
+
+    public static void addListener(OnDeliveredListener listener) {
+        sListeners.addIfAbsent(listener);
+    }
+
+    public static void removeListener(OnDeliveredListener listener) {
+        sListeners.remove(listener);
+    }
+
+    /**
+     * 应用启动时调用,上次没有送达的请求在有网络时继续重放
+     */
+    public static void init() {
+        schedule();
+    }
+
+    //还没有送达的请求数,要查数据库,不能在主线程调用
+    public static int getPendingCount() {
+        return CacheDatabase.get().getOutbox().count();
+    }
+
+    //在网络线程调用
+    static void enqueue(String method, String url, Params params, Map<String, String> headers, String tag) {
+        HashMap<String, String> values = new HashMap<>();
+        for (int i = 0; i < params.size(); i++) {
+            values.put(params.keyAt(i), params.valueAt(i));
+        }
+        Outbox outbox = new Outbox();
+        outbox.method = method;
+        outbox.url = url;
+        outbox.params = JSON.toJSONString(values);
+        outbox.headers = JSON.toJSONString(headers);
+        outbox.tag = tag;
+        outbox.createdAt = System.currentTimeMillis();
+        CacheDatabase.get().getOutbox().save(outbox);
+        schedule();
+    }
+
+    static Request<Object, ?> toRequest(Outbox outbox) {
+        Request<Object, ?> request = "POST".equals(outbox.method) ? new PostRequest<>(outbox.url) : new GetRequest<>(outbox.url);
+        JSONObject params = JSON.parseObject(outbox.params);
+        if (params != null) {
+            for (Map.Entry<String, Object> entry : params.entrySet()) {
+                request.addParam(entry.getKey(), String.valueOf(entry.getValue()));
+            }
+        }
+        JSONObject headers = JSON.parseObject(outbox.headers);
+        if (headers != null) {
+            for (Map.Entry<String, Object> entry : headers.entrySet()) {
+                request.addHeader(entry.getKey(), String.valueOf(entry.getValue()));
+            }
+        }
+        //重放的请求不知道业务方的实体类型,解析成JSONObject/JSONArray交给业务方自己转换
+        return request.responseType(Object.class).coalesce(false).priority(Request.BACKGROUND);
+    }
+
+    @SuppressLint("RestrictedApi")
+    static void dispatch(final String tag, final ApiResponse<Object> response) {
+        ArchTaskExecutor.getMainThreadExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                for (OnDeliveredListener listener : sListeners) {
+                    listener.onDelivered(tag, response);
+                }
+            }
+        });
+    }
+
+    private static void schedule() {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(OutboxWorker.class)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, 10, TimeUnit.SECONDS)
+                .build();
+        //KEEP在worker执行期间什么也不做,它读完表之后才入队的请求就要等到下次启动了。
+        //这里接在已有的worker后面,前一个处理完(包括退避重试)之后再跑一次; worker自己也会处理到表空为止
+        WorkManager.getInstance(AppGlobals.getApplication())
+                .enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.APPEND, request);
+    }
+}
@@ -0,0 +1,57 @@
+package com.mooc.libnetwork;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.mooc.libnetwork.cache.CacheDatabase;
+import com.mooc.libnetwork.cache.Outbox;
+import com.mooc.libnetwork.cache.OutboxDao;
+
+import java.util.List;
+
+/**
+ * 按入队顺序重放outbox表中的请求
+ */
+public class OutboxWorker extends Worker {
+    //连续这么多次都没能发到服务端就放弃
+    private static final int MAX_ATTEMPTS = 10;
+
+    public OutboxWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        OutboxDao dao = CacheDatabase.get().getOutbox();
+        //重放期间可能又有新的请求入队,一直处理到表里没有为止
+        List<Outbox> list;
+        while (!(list = dao.getAll()).isEmpty()) {
+            for (Outbox outbox : list) {
+                if (isStopped()) {
+                    return Result.retry();
+                }
+                ApiResponse<Object> response = OutboxManager.toRequest(outbox).execute();
+                if (response.success) {
+                    dao.delete(outbox);
+                    OutboxManager.dispatch(outbox.tag, response);
+                    continue;
+                }
+
+                //只有确定没发到服务端的才重试; 超时、5xx、解析失败时服务端可能已经处理过了,再发一次会重复执行
+                outbox.attempts++;
+                if (response.notSent && outbox.attempts < MAX_ATTEMPTS) {
+                    dao.update(outbox);
+                    //保证顺序,后面的请求等这一条送达之后再重放
+                    return Result.retry();
+                }
+                dao.delete(outbox);
+                OutboxManager.dispatch(outbox.tag, response);
+            }
+        }
+        return Result.success();
+    }
+}
@@ -0,0 +1,150 @@
+package com.mooc.libnetwork;
+
+import java.util.Arrays;
+
+/**
+ * 请求参数
+ * <p>
+ * 按key有序存放在几个平行的数组里,基本类型直接存在long[]/double[]中,不装箱;
+ * 拼url时直接把数字追加到StringBuilder,不用先转成String。
+ * 参数一般只有几个,插入时二分查找+移动数组就够了,遍历的顺序就是UrlBuilder需要的规范顺序
+ */
+public final class Params {
+    private static final byte TYPE_STRING = 0;
+    private static final byte TYPE_LONG = 1;
+    private static final byte TYPE_DOUBLE = 2;
+    private static final byte TYPE_FLOAT = 3;
+    private static final byte TYPE_BOOLEAN = 4;
+
+    private String[] mKeys = new String[8];
+    private byte[] mTypes = new byte[8];
+    private long[] mLongs = new long[8];
+    private double[] mDoubles = new double[8];
+    private String[] mStrings = new String[8];
+    private int mSize;
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public String keyAt(int index) {
+        return mKeys[index];
+    }
+
+    //和String.valueOf(包装类型)的结果一致
+    public String valueAt(int index) {
+        switch (mTypes[index]) {
+            case TYPE_LONG:
+                return String.valueOf(mLongs[index]);
+            case TYPE_DOUBLE:
+                return String.valueOf(mDoubles[index]);
+            case TYPE_FLOAT:
+                return String.valueOf((float) mDoubles[index]);
+            case TYPE_BOOLEAN:
+                return String.valueOf(mLongs[index] != 0);
+            default:
+                return mStrings[index];
+        }
+    }
+
+    /**
+     * 把第index个值追加到builder, 字符串按URLEncoder的规则编码, 数字和布尔值本身就不需要编码
+     */
+    void appendEncodedValue(int index, StringBuilder builder) {
+        switch (mTypes[index]) {
+            case TYPE_LONG:
+                builder.append(mLongs[index]);
+                break;
+            case TYPE_DOUBLE:
+                builder.append(mDoubles[index]);
+                break;
+            case TYPE_FLOAT:
+                builder.append((float) mDoubles[index]);
+                break;
+            case TYPE_BOOLEAN:
+                builder.append(mLongs[index] != 0);
+                break;
+            default:
+                UrlBuilder.appendEncoded(builder, mStrings[index]);
+                break;
+        }
+    }
+
+    void put(String key, String value) {
+        int index = slot(key);
+        mTypes[index] = TYPE_STRING;
+        mStrings[index] = value;
+    }
+
+    void put(String key, long value) {
+        int index = slot(key);
+        mTypes[index] = TYPE_LONG;
+        mLongs[index] = value;
+        mStrings[index] = null;
+    }
+
+    void put(String key, double value) {
+        int index = slot(key);
+        mTypes[index] = TYPE_DOUBLE;
+        mDoubles[index] = value;
+        mStrings[index] = null;
+    }
+
+    void put(String key, float value) {
+        int index = slot(key);
+        mTypes[index] = TYPE_FLOAT;
+        mDoubles[index] = value;
+        mStrings[index] = null;
+    }
+
+    void put(String key, boolean value) {
+        int index = slot(key);
+        mTypes[index] = TYPE_BOOLEAN;
+        mLongs[index] = value ? 1 : 0;
+        mStrings[index] = null;
+    }
+
+    //找到key所在的位置, 不存在的话按顺序插入一个空位
+    private int slot(String key) {
+        int index = Arrays.binarySearch(mKeys, 0, mSize, key);
+        if (index >= 0) {
+            return index;
+        }
+        index = -index - 1;
+        if (mSize == mKeys.length) {
+            int capacity = mSize * 2;
+            mKeys = Arrays.copyOf(mKeys, capacity);
+            mTypes = Arrays.copyOf(mTypes, capacity);
+            mLongs = Arrays.copyOf(mLongs, capacity);
+            mDoubles = Arrays.copyOf(mDoubles, capacity);
+            mStrings = Arrays.copyOf(mStrings, capacity);
+        }
+        int moved = mSize - index;
+        if (moved > 0) {
+            System.arraycopy(mKeys, index, mKeys, index + 1, moved);
+            System.arraycopy(mTypes, index, mTypes, index + 1, moved);
+            System.arraycopy(mLongs, index, mLongs, index + 1, moved);
+            System.arraycopy(mDoubles, index, mDoubles, index + 1, moved);
+            System.arraycopy(mStrings, index, mStrings, index + 1, moved);
+        }
+        mKeys[index] = key;
+        mSize++;
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < mSize; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(mKeys[i]).append('=').append(valueAt(i));
+        }
+        return builder.append('}').toString();
+    }
+}
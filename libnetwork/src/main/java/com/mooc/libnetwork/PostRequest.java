@@ -1,24 +1,81 @@
 package com.mooc.libnetwork;
 
-import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
 
 import okhttp3.FormBody;
+import okhttp3.MediaType;
 import okhttp3.MultipartBody;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
 
 public class PostRequest<T> extends Request<T, PostRequest> {
+    //表单太小的话gzip的头尾反而会让body变大
+    private static final long GZIP_MIN_LENGTH = 1024;
+
+    private boolean mGzip;
+
     public PostRequest(String url) {
         super(url);
     }
 
+    /**
+     * 表单超过{@link #GZIP_MIN_LENGTH}时用gzip压缩后提交,并带上Content-Encoding: gzip,
+     * 需要服务端支持解压请求body
+     */
+    public PostRequest gzip(boolean gzip) {
+        mGzip = gzip;
+        return this;
+    }
+
     @Override
     protected okhttp3.Request generateRequest(okhttp3.Request.Builder builder) {
         //post请求表单提交,  MultipartBody.Builder ..
         FormBody.Builder bodyBuilder = new FormBody.Builder();
-        for (Map.Entry<String, Object> entry : params.entrySet()) {
-            bodyBuilder.add(entry.getKey(), String.valueOf(entry.getValue()));   //在FormBody里, 不需要URLEncoder转码
+        for (int i = 0; i < params.size(); i++) {
+            bodyBuilder.add(params.keyAt(i), params.valueAt(i));   //在FormBody里, 不需要URLEncoder转码
+        }
+        RequestBody body = bodyBuilder.build();
+        if (mGzip && contentLength(body) >= GZIP_MIN_LENGTH) {
+            builder.header("Content-Encoding", "gzip");
+            body = gzip(body);
         }
-        okhttp3.Request request = builder.url(mUrl).post(bodyBuilder.build()).build();
+        okhttp3.Request request = builder.url(mUrl).post(body).build();
         return request;
     }
 
+    private static long contentLength(RequestBody body) {
+        try {
+            return body.contentLength();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static RequestBody gzip(final RequestBody body) {
+        return new RequestBody() {
+            @Nullable
+            @Override
+            public MediaType contentType() {
+                return body.contentType();
+            }
+
+            @Override
+            public long contentLength() {
+                //压缩后的长度事先不知道
+                return -1;
+            }
+
+            @Override
+            public void writeTo(@NotNull BufferedSink sink) throws IOException {
+                BufferedSink gzipSink = Okio.buffer(new GzipSink(sink));
+                body.writeTo(gzipSink);
+                gzipSink.close();
+            }
+        };
+    }
 }
@@ -1,28 +1,43 @@
 package com.mooc.libnetwork;
 
 import android.annotation.SuppressLint;
+import android.net.Uri;
 import android.text.TextUtils;
 import android.util.Log;
 
 import androidx.annotation.IntDef;
 import androidx.annotation.NonNull;
 import androidx.arch.core.executor.ArchTaskExecutor;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
 
 //import com.mooc.libnetwork.cache.CacheManager;
+import com.mooc.libnetwork.cache.Cache;
 import com.mooc.libnetwork.cache.CacheManager;
+import com.mooc.libnetwork.metrics.NetworkMetrics;
 import org.jetbrains.annotations.NotNull;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.Serializable;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
-import java.lang.reflect.Field;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.nio.charset.Charset;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import okhttp3.Call;
 import okhttp3.Callback;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 
 
 
@@ -30,7 +45,7 @@ import okhttp3.Response;
 public abstract class Request<T, R extends Request> implements Cloneable {
     protected String mUrl;
     protected HashMap<String, String> headers = new HashMap<>();
-    protected HashMap<String, Object> params = new HashMap<>();
+    protected Params params = new Params();
 
     //仅仅只访问本地缓存，即便本地缓存不存在，也不会发起网络请求
     public static final int CACHE_ONLY = 1;
@@ -41,10 +56,41 @@ public abstract class Request<T, R extends Request> implements Cloneable {
     //先访问网络，成功后缓存到本地
     public static final int NET_CACHE = 4;
 
+    //用户点击触发的请求,比如点赞、评论,不受并发上限的限制
+    public static final int IMMEDIATE = 0;
+    //当前页面可见内容的请求,比如首屏数据
+    public static final int VISIBLE = 1;
+    //预加载,比如列表的下一页,页面切走时可以被取消
+    public static final int PREFETCH = 2;
+    //后台任务,比如发件箱重放
+    public static final int BACKGROUND = 3;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int HTTP_NOT_MODIFIED = 304;
+    private static final ConcurrentHashMap<Class<?>, Type> sCallbackTypes = new ConcurrentHashMap<>();
+
     private String cacheKey;            //=> Cache.key
     private Type mType;
     //private Class mClaz;
     private int mCacheStrategy = NET_ONLY;
+    //缓存原始的响应字节,而不是解析后的对象再序列化一遍
+    private boolean mCacheRawResponse = true;
+    //是否允许合并相同的进行中请求, 见SingleFlight
+    private boolean mCoalesce = true;
+    //本次请求是否携带了If-None-Match / If-Modified-Since
+    private boolean mRevalidating;
+    //非空时,没能发到服务端的请求会存入发件箱,见OutboxManager
+    private String mOutboxTag;
+    private int mPriority = VISIBLE;
+    //发起方,页面切走时按它取消自己的请求,见RequestScheduler.cancel(int, Object)
+    private Object mTag;
+    //拼好参数的url, 参数变化时置空, 见UrlBuilder
+    private String mEncodedUrl;
+    //缓存key太长时换成摘要
+    private boolean mHashLongCacheKey = true;
+    //合并了相同请求时保留原始响应字节,给每个等待的callback各自解析一份body
+    private boolean mShareResult;
+    private byte[] mSharedBytes;
 
 
     @IntDef({CACHE_ONLY, CACHE_FIRST, NET_CACHE, NET_ONLY})
@@ -54,6 +100,13 @@ public abstract class Request<T, R extends Request> implements Cloneable {
     }
 
 
+    @IntDef({IMMEDIATE, VISIBLE, PREFETCH, BACKGROUND})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface Priority {
+
+    }
+
+
     public Request(String url) {
         mUrl = url;
     }
@@ -65,26 +118,69 @@ public abstract class Request<T, R extends Request> implements Cloneable {
     }
 
 
+    /**
+     * 只接受String和基本类型的包装类型,其他类型忽略。基本类型请直接用下面的重载,避免装箱
+     */
     public R addParam(String key, Object value) {
         if (value == null) {
             return (R) this;
         }
-        //int byte char short long double float boolean 和他们的包装类型，但是除了 String.class 所以要额外判断
-        try {
-            if (value.getClass() == String.class) {
-                params.put(key, value);
-            } else {
-                Field field = value.getClass().getField("TYPE");
-                Class claz = (Class) field.get(null);
-                if (claz.isPrimitive()) {
-                    params.put(key, value);
-                }
-            }
-        } catch (NoSuchFieldException e) {
-            e.printStackTrace();
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
+        if (value instanceof String) {
+            return addParam(key, (String) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return addParam(key, ((Number) value).longValue());
+        } else if (value instanceof Double) {
+            return addParam(key, ((Double) value).doubleValue());
+        } else if (value instanceof Float) {
+            return addParam(key, ((Float) value).floatValue());
+        } else if (value instanceof Boolean) {
+            return addParam(key, ((Boolean) value).booleanValue());
+        } else if (value instanceof Character) {
+            return addParam(key, ((Character) value).charValue());
+        }
+        return (R) this;
+    }
+
+    public R addParam(String key, String value) {
+        if (value == null) {
+            return (R) this;
         }
+        mEncodedUrl = null;
+        params.put(key, value);
+        return (R) this;
+    }
+
+    public R addParam(String key, int value) {
+        return addParam(key, (long) value);
+    }
+
+    public R addParam(String key, long value) {
+        mEncodedUrl = null;
+        params.put(key, value);
+        return (R) this;
+    }
+
+    public R addParam(String key, double value) {
+        mEncodedUrl = null;
+        params.put(key, value);
+        return (R) this;
+    }
+
+    //没有这个重载的话float会被放宽成double,拼出来的值和Float.toString不一样
+    public R addParam(String key, float value) {
+        mEncodedUrl = null;
+        params.put(key, value);
+        return (R) this;
+    }
+
+    //没有这个重载的话char会被放宽成int,拼出来的是字符的编码
+    public R addParam(String key, char value) {
+        return addParam(key, String.valueOf(value));
+    }
+
+    public R addParam(String key, boolean value) {
+        mEncodedUrl = null;
+        params.put(key, value);
         return (R) this;
     }
 
@@ -96,6 +192,52 @@ public abstract class Request<T, R extends Request> implements Cloneable {
     }
 
 
+    /**
+     * @param raw true: 缓存网络返回的原始json字节,读缓存时再解析; false: 缓存解析后的对象
+     */
+    public R cacheRawResponse(boolean raw) {
+        mCacheRawResponse = raw;
+        return (R) this;
+    }
+
+    /**
+     * 虽然是GET但每次调用都会改变服务端状态的接口(比如点赞切换),需要关掉合并
+     */
+    public R coalesce(boolean coalesce) {
+        mCoalesce = coalesce;
+        return (R) this;
+    }
+
+    /**
+     * 写请求因为连接失败、域名解析失败没有发到服务端时不丢弃,存入发件箱等有网络时自动重放,
+     * 此时onError收到的ApiResponse.queued=true, 重放的结果通过OutboxManager.OnDeliveredListener按tag通知
+     */
+    public R outbox(String tag) {
+        mOutboxTag = tag;
+        return (R) this;
+    }
+
+    /**
+     * 调度优先级,见RequestScheduler, 默认VISIBLE
+     */
+    public R priority(@Priority int priority) {
+        mPriority = priority;
+        return (R) this;
+    }
+
+    public R tag(Object tag) {
+        mTag = tag;
+        return (R) this;
+    }
+
+    /**
+     * @param hash true: 超过UrlBuilder.MAX_KEY_LENGTH的缓存key换成固定长度的SHA-1摘要, 默认true
+     */
+    public R hashLongCacheKey(boolean hash) {
+        mHashLongCacheKey = hash;
+        return (R) this;
+    }
+
     public R cacheKey(String key) {
         this.cacheKey = key;
         return (R) this;
@@ -114,6 +256,7 @@ public abstract class Request<T, R extends Request> implements Cloneable {
     private Call getCall() {
         okhttp3.Request.Builder builder = new okhttp3.Request.Builder();
         addHeaders(builder);
+        addValidators(builder);
         okhttp3.Request request = generateRequest(builder);
         Call call = ApiService.okHttpClient.newCall(request);
         return call;
@@ -127,6 +270,27 @@ public abstract class Request<T, R extends Request> implements Cloneable {
         }
     }
 
+    //本地有原始响应缓存时带上校验信息发起条件请求,服务端数据没变就只会返回一个空的304
+    private void addValidators(okhttp3.Request.Builder builder) {
+        mRevalidating = false;
+        if (!mCacheRawResponse || (mCacheStrategy != CACHE_FIRST && mCacheStrategy != NET_CACHE)) {
+            return;
+        }
+        String key = TextUtils.isEmpty(cacheKey) ? generateCacheKey() : cacheKey;
+        Cache cache = CacheManager.getResponseCache(key);
+        if (cache == null) {
+            return;
+        }
+        if (!TextUtils.isEmpty(cache.etag)) {
+            builder.header("If-None-Match", cache.etag);
+            mRevalidating = true;
+        }
+        if (!TextUtils.isEmpty(cache.lastModified)) {
+            builder.header("If-Modified-Since", cache.lastModified);
+            mRevalidating = true;
+        }
+    }
+
 
     //同步
     public ApiResponse<T> execute() {
@@ -135,20 +299,40 @@ public abstract class Request<T, R extends Request> implements Cloneable {
         }
 
         if (mCacheStrategy == CACHE_ONLY) {
-            return readCache();
+            return readCache(mType);
         }
 
         if (mCacheStrategy != CACHE_ONLY) {
             ApiResponse<T> result = null;
+            RequestScheduler.SyncTask task = new RequestScheduler.SyncTask(mPriority, getHost(), mTag);
+            RequestScheduler.enqueue(task);
+            if (!task.await()) {
+                //刚被放行就被取消(或者等待时被中断)的话已经占了一个名额,要还回去; 还在排队时被取消的finish什么也不做
+                RequestScheduler.finish(task);
+                result = new ApiResponse<>();
+                result.message = "Canceled";
+                return result;
+            }
             try {
-                Response response = getCall().execute();
+                Call call = getCall();
+                RequestScheduler.bind(task, call);
+                Response response = call.execute();
                 result = parseResponse(response, null);
+                if (result == null) {
+                    //304但本地缓存已经被清理掉了,还在这个调度任务里重新完整请求一次
+                    call = ApiService.okHttpClient.newCall(removeValidators(response.request()));
+                    RequestScheduler.bind(task, call);
+                    result = parseResponse(call.execute(), null);
+                }
             } catch (IOException e) {
                 e.printStackTrace();
                 if (result == null) {
                     result = new ApiResponse<>();
                     result.message = e.getMessage();
+                    result.notSent = isNotSent(e);
                 }
+            } finally {
+                RequestScheduler.finish(task);
             }
             return result;
         }
@@ -158,13 +342,36 @@ public abstract class Request<T, R extends Request> implements Cloneable {
 
 
     //异步
-    @SuppressLint("RestrictedApi")
     public void execute(final JsonCallback callback) {
+        execute(null, callback);
+    }
+
+    /**
+     * 异步请求,并且和owner的生命周期绑定: owner销毁时取消还在排队或者进行中的请求,
+     * 已经返回的响应不再解析,callback也不会再被回调。需要在主线程调用
+     *
+     * @param owner 为null时和{@link #execute(JsonCallback)}一样
+     */
+    @SuppressLint("RestrictedApi")
+    public void execute(LifecycleOwner owner, final JsonCallback callback) {
+        final LifecycleBinding binding;
+        if (owner != null) {
+            if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+                return;
+            }
+            binding = new LifecycleBinding(owner);
+        } else {
+            binding = null;
+        }
+
         if (mCacheStrategy != NET_ONLY) {
             ArchTaskExecutor.getIOThreadExecutor().execute(new Runnable() {
                 @Override
                 public void run() {
-                    ApiResponse<T> response = readCache();
+                    if (binding != null && binding.cancelled) {
+                        return;
+                    }
+                    ApiResponse<T> response = readCache(getResponseType(callback));
                     if (callback != null && response.body != null) {
                         callback.onCacheSuccess(response);
                     }
@@ -172,32 +379,251 @@ public abstract class Request<T, R extends Request> implements Cloneable {
             });
         }
 
-        if (mCacheStrategy != CACHE_ONLY) {
-            getCall().enqueue(new Callback() {
-                @Override
-                public void onFailure(@NotNull Call call, @NotNull IOException e) {
-                    ApiResponse<T> result = new ApiResponse<>();
-                    result.message = e.getMessage();
-                    callback.onError(result);
+        if (mCacheStrategy == CACHE_ONLY) {
+            if (binding != null) {
+                binding.unbind();
+            }
+            return;
+        }
+
+        //绑定了生命周期的请求随时可能被单独取消,不参与合并
+        final String flightKey = callback != null && binding == null && mCoalesce && canCoalesce() ? generateFlightKey(callback) : null;
+        if (flightKey != null && !SingleFlight.join(flightKey, callback)) {
+            //相同的请求正在进行,等它的结果就行了
+            return;
+        }
+        mShareResult = flightKey != null;
+        RequestScheduler.Task task = new RequestScheduler.Task(mPriority, getHost(), mTag) {
+            @Override
+            void onStart() {
+                if (mCacheRawResponse && ArchTaskExecutor.getInstance().isMainThread()) {
+                    //生成Call时要查缓存数据库取ETag,不能在主线程
+                    ArchTaskExecutor.getIOThreadExecutor().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            start();
+                        }
+                    });
+                    return;
                 }
+                start();
+            }
 
-                @Override
-                public void onResponse(@NotNull Call call, @NotNull Response response) throws IOException {
-                    ApiResponse<T> result = parseResponse(response, callback);
-                    if (!result.success) {
-                        callback.onError(result);
-                    } else {
-                        callback.onSuccess(result);
+            private void start() {
+                final RequestScheduler.Task task = this;
+                Call call = getCall();
+                RequestScheduler.bind(task, call);
+                call.enqueue(new Callback() {
+                    @Override
+                    public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                        RequestScheduler.finish(task);
+                        if (binding != null && !binding.complete()) {
+                            return;
+                        }
+                        ApiResponse<T> result = new ApiResponse<>();
+                        result.message = e.getMessage();
+                        result.notSent = isNotSent(e);
+                        //读超时、连接被重置时服务端可能已经处理过了,写请求不是幂等的,只有确定没发出去的才能重放
+                        if (mOutboxTag != null && result.notSent && !call.isCanceled()) {
+                            OutboxManager.enqueue(Request.this instanceof PostRequest ? "POST" : "GET", mUrl, params, headers, mOutboxTag);
+                            result.queued = true;
+                        }
+                        dispatchResult(flightKey, callback, result);
                     }
+
+                    @Override
+                    public void onResponse(@NotNull Call call, @NotNull Response response) throws IOException {
+                        if (call.isCanceled()) {
+                            //已经取消了,不用再读body解析
+                            response.close();
+                            onFailure(call, new IOException("Canceled"));
+                            return;
+                        }
+                        ApiResponse<T> result = null;
+                        boolean refetch = false;
+                        try {
+                            result = parseResponse(response, callback);
+                            if (result == null) {
+                                //304但本地缓存已经被清理掉了,还在这个调度任务里重新完整请求一次,
+                                //仍然占着它的名额,页面切走、销毁时也仍然可以被取消
+                                Call full = ApiService.okHttpClient.newCall(removeValidators(response.request()));
+                                RequestScheduler.bind(task, full);
+                                full.enqueue(this);
+                                refetch = true;
+                                return;
+                            }
+                        } finally {
+                            if (!refetch) {
+                                RequestScheduler.finish(task);
+                            }
+                        }
+                        if (binding != null && !binding.complete()) {
+                            return;
+                        }
+                        dispatchResult(flightKey, callback, result);
+                    }
+                });
+            }
+
+            @Override
+            void onCancel() {
+                if (binding != null && !binding.complete()) {
+                    return;
+                }
+                ApiResponse<T> result = new ApiResponse<>();
+                result.message = "Canceled";
+                dispatchResult(flightKey, callback, result);
+            }
+        };
+        if (binding != null) {
+            binding.task = task;
+        }
+        RequestScheduler.enqueue(task);
+    }
+
+    /**
+     * 把一次异步请求和LifecycleOwner绑定,ON_DESTROY时取消
+     */
+    private static class LifecycleBinding implements LifecycleEventObserver {
+        private final LifecycleOwner mOwner;
+        volatile RequestScheduler.Task task;
+        volatile boolean cancelled;
+
+        LifecycleBinding(LifecycleOwner owner) {
+            mOwner = owner;
+            owner.getLifecycle().addObserver(this);
+        }
+
+        @Override
+        public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+            if (event != Lifecycle.Event.ON_DESTROY) {
+                return;
+            }
+            cancelled = true;
+            unbind();
+            if (task != null) {
+                RequestScheduler.cancel(task);
+            }
+        }
+
+        /**
+         * 请求结束,解除绑定
+         *
+         * @return false: owner已经销毁,不应该再回调callback
+         */
+        boolean complete() {
+            unbind();
+            return !cancelled;
+        }
+
+        @SuppressLint("RestrictedApi")
+        void unbind() {
+            final LifecycleEventObserver observer = this;
+            ArchTaskExecutor.getMainThreadExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    mOwner.getLifecycle().removeObserver(observer);
                 }
             });
         }
     }
 
+    private void dispatchResult(String flightKey, JsonCallback callback, ApiResponse<T> result) {
+        if (flightKey == null) {
+            dispatchResult(callback, result);
+            return;
+        }
+        List<JsonCallback> waiters = SingleFlight.complete(flightKey);
+        for (int i = 0; i < waiters.size(); i++) {
+            //body是会被页面修改的实体类(比如点赞改的是Feed.ugc),不能让几个页面共用同一个对象
+            dispatchResult(waiters.get(i), i == 0 ? result : copyResult(result, waiters.get(i)));
+        }
+    }
+
+    private ApiResponse<T> copyResult(ApiResponse<T> result, JsonCallback callback) {
+        ApiResponse<T> copy = new ApiResponse<>();
+        copy.success = result.success;
+        copy.status = result.status;
+        copy.message = result.message;
+        copy.queued = result.queued;
+        if (result.body == null) {
+            return copy;
+        }
+        Type type = getResponseType(callback);
+        if (mSharedBytes != null) {
+            try {
+                copy.body = (T) ApiService.sConvert.convert(new InputStreamReader(new ByteArrayInputStream(mSharedBytes), UTF_8), type);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        } else {
+            //304时结果来自本地缓存
+            copy.body = readCache(type).body;
+        }
+        if (copy.body == null) {
+            copy.success = false;
+            copy.status = 0;
+            copy.message = "解析失败";
+        }
+        return copy;
+    }
 
-    private ApiResponse<T> readCache() {
+    private void dispatchResult(JsonCallback callback, ApiResponse<T> result) {
+        if (!result.success) {
+            callback.onError(result);
+        } else if (result.status == HTTP_NOT_MODIFIED && mCacheStrategy == CACHE_FIRST) {
+            //304的结果就是本地缓存,先读缓存时已经通过onCacheSuccess交出去过完全相同的数据了,不再重复回调
+        } else {
+            callback.onSuccess(result);
+        }
+    }
+
+    private static boolean isNotSent(IOException e) {
+        return e instanceof ConnectException || e instanceof UnknownHostException || e instanceof NoRouteToHostException;
+    }
+
+    private String getHost() {
+        return Uri.parse(mUrl).getHost();
+    }
+
+    /**
+     * 是否允许和进行中的相同请求合并,只有幂等的请求才可以
+     */
+    protected boolean canCoalesce() {
+        return false;
+    }
+
+    //url + 参数 + header + 缓存策略 + 返回类型 + 优先级 + tag 完全相同才认为是同一个请求。
+    //RequestScheduler按优先级和tag取消请求,不同页面、不同优先级的请求合并在一起的话,取消一个会让其他的一起失败,
+    //界面上的请求也不能排在可以被取消的预加载后面
+    private String generateFlightKey(JsonCallback callback) {
+        StringBuilder builder = new StringBuilder(getEncodedUrl());
+        if (!headers.isEmpty()) {
+            builder.append('|').append(headers);
+        }
+        builder.append('|').append(mCacheStrategy);
+        builder.append('|').append(getResponseType(callback));
+        builder.append('|').append(mPriority);
+        if (mTag != null) {
+            builder.append('|').append(mTag.getClass().getName()).append('@').append(System.identityHashCode(mTag));
+        }
+        return builder.toString();
+    }
+
+
+    private ApiResponse<T> readCache(Type type) {
         String key = TextUtils.isEmpty(cacheKey) ? generateCacheKey() : cacheKey;
         Object cache = CacheManager.getCache(key);
+        if (cache instanceof byte[]) {
+            //缓存的是原始响应, 到真正需要的时候才解析
+            try {
+                Reader reader = new InputStreamReader(new ByteArrayInputStream((byte[]) cache), UTF_8);
+                cache = type == null ? null : ApiService.sConvert.convert(reader, type);
+            } catch (Exception e) {
+                e.printStackTrace();
+                cache = null;
+            }
+        }
         ApiResponse<T> result = new ApiResponse<>();
         result.status = 304;
         result.message = "缓存获取成功";
@@ -206,28 +632,73 @@ public abstract class Request<T, R extends Request> implements Cloneable {
         return result;
     }
 
+    private Type getResponseType(JsonCallback callback) {
+        if (callback != null) {
+            //每个JsonCallback子类的泛型参数只需要反射一次
+            Class<?> claz = callback.getClass();
+            Type type = sCallbackTypes.get(claz);
+            if (type == null) {
+                ParameterizedType superclass = (ParameterizedType) claz.getGenericSuperclass();
+                type = superclass.getActualTypeArguments()[0];
+                sCallbackTypes.put(claz, type);
+            }
+            return type;
+        }
+        return mType;
+    }
+
+
+    //去掉校验信息,重新完整请求一次
+    private okhttp3.Request removeValidators(okhttp3.Request request) {
+        return request.newBuilder()
+                .removeHeader("If-None-Match")
+                .removeHeader("If-Modified-Since")
+                .build();
+    }
 
     /**
-     * 拿到response.body().string()必须自己手动解析Object
+     * 从response.body()的字节流直接解析Object
      * @param response
      * @param callback
-     * @return
+     * @return 304但发出请求之后本地缓存被清理掉了时返回null, 需要调用方用{@link #removeValidators(okhttp3.Request)}重新请求
      */
     private ApiResponse<T> parseResponse(Response response, JsonCallback<T> callback) {
+        if (response.code() == HTTP_NOT_MODIFIED && mRevalidating) {
+            //服务端数据没有变化,body是空的,直接使用本地缓存
+            ApiResponse<T> result = readCache(getResponseType(callback));
+            response.close();
+            if (result.body != null) {
+                result.status = HTTP_NOT_MODIFIED;
+                result.message = null;
+                return result;
+            }
+            mRevalidating = false;
+            return null;
+        }
+
         String message = null;
         int status = response.code();
         boolean success = response.isSuccessful();
         ApiResponse<T> result = new ApiResponse<>();
         Convert convert = ApiService.sConvert;
+        boolean saveRawCache = mCacheStrategy != NET_ONLY && mCacheRawResponse;
+        boolean keepBytes = saveRawCache || mShareResult;
+        byte[] bytes = null;
         try {
-            String content = response.body().string();
+            ResponseBody body = response.body();
             if (success) {
-                if (callback != null) {
-                    ParameterizedType type = (ParameterizedType) callback.getClass().getGenericSuperclass();
-                    Type argument = type.getActualTypeArguments()[0];
-                    result.body = (T) convert.convert(content, argument);
-                } else if (mType != null) {
-                    result.body = (T) convert.convert(content, mType);
+                Type type = getResponseType(callback);
+                if (type != null) {
+                    long parseStart = System.nanoTime();
+                    if (keepBytes) {
+                        //原始字节还要写入缓存或者再解析给合并的请求,只能先完整读出来,但仍然直接从字节流解析,不再转成String
+                        bytes = body.bytes();
+                        result.body = (T) convert.convert(new InputStreamReader(new ByteArrayInputStream(bytes), UTF_8), type);
+                    } else {
+                        result.body = (T) convert.convert(body.charStream(), type);
+                    }
+                    //不缓存原始字节时body是边读边解析的,这里记录的时间也包含了读body
+                    NetworkMetrics.recordParse(response.request().url().encodedPath(), System.nanoTime() - parseStart);
                 }
 //                } else if (mClaz != null) {
 //                    result.body = (T) convert.convert(content, mClaz);
@@ -236,34 +707,59 @@ public abstract class Request<T, R extends Request> implements Cloneable {
                     Log.e("request", "parseResponse: 无法解析 ");
                 }
             } else {
-                message = content;
+                message = body.string();
             }
         } catch (Exception e) {
             message = e.getMessage();
             success = false;
             status = 0;
+        } finally {
+            response.close();
         }
 
         result.success = success;
         result.status = status;
         result.message = message;
+        if (mShareResult) {
+            mSharedBytes = bytes;
+        }
 
-        if (mCacheStrategy != NET_ONLY && result.success && result.body != null && result.body instanceof Serializable) {
-            saveCache(result.body);
+        if (mCacheStrategy != NET_ONLY && result.success && result.body != null) {
+            if (saveRawCache) {
+                saveRawCache(bytes, response);
+            } else if (result.body instanceof Serializable) {
+                saveCache(result.body);
+            }
         }
         return result;
     }
 
+    private void saveRawCache(byte[] bytes, Response response) {
+        String key = TextUtils.isEmpty(cacheKey) ? generateCacheKey() : cacheKey;
+        CacheManager.saveResponse(key, bytes, response.header("ETag"), response.header("Last-Modified"));
+    }
+
     private void saveCache(T body) {
         String key = TextUtils.isEmpty(cacheKey) ? generateCacheKey() : cacheKey;
         CacheManager.save(key, body);
     }
 
     private String generateCacheKey() {
-        cacheKey = UrlCreator.createUrlFromParams(mUrl, params);
+        String url = getEncodedUrl();
+        cacheKey = mHashLongCacheKey ? UrlBuilder.hashIfLong(url) : url;
         return cacheKey;
     }
 
+    /**
+     * url + 按key排序的参数, 同一组参数只拼一次, GET请求的url、缓存key、合并请求的key共用
+     */
+    protected String getEncodedUrl() {
+        if (mEncodedUrl == null) {
+            mEncodedUrl = UrlBuilder.build(mUrl, params);
+        }
+        return mEncodedUrl;
+    }
+
     @NonNull
     @Override
     public Request clone() throws CloneNotSupportedException {
@@ -0,0 +1,244 @@
+package com.mooc.libnetwork;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+
+/**
+ * 按优先级调度请求,挡在OkHttp的Dispatcher前面
+ * <p>
+ * 1.每个优先级有自己的并发上限,后台分页、预加载最多只能占用少量连接,不会和首屏、点击互动抢
+ * 2.同一个host上同时进行的请求也有上限,IMMEDIATE不受任何限制
+ * 3.有空位时总是先放行优先级高的,同优先级先来先走
+ * 4.页面切走时可以取消这个页面自己(按tag区分)某个优先级还在排队或者进行中的请求,见{@link #cancel(int, Object)};
+ * 页面销毁时取消和它绑定的请求,
+ * 见{@link Request#execute(androidx.lifecycle.LifecycleOwner, JsonCallback)}
+ */
+public final class RequestScheduler {
+    //下标是优先级
+    private static final int[] MAX_RUNNING = {Integer.MAX_VALUE, 4, 2, 1};
+    private static final int MAX_RUNNING_PER_HOST = 6;
+
+    private static final PriorityQueue<Task> sPending = new PriorityQueue<>(11, new Comparator<Task>() {
+        @Override
+        public int compare(Task o1, Task o2) {
+            if (o1.priority != o2.priority) {
+                return o1.priority - o2.priority;
+            }
+            return Long.compare(o1.sequence, o2.sequence);
+        }
+    });
+    private static final List<Task> sRunning = new ArrayList<>();
+    private static final int[] sRunningCount = new int[MAX_RUNNING.length];
+    private static final HashMap<String, Integer> sRunningPerHost = new HashMap<>();
+    private static long sSequence;
+    private static final AtomicLong sCancelledCount = new AtomicLong();
+
+    private RequestScheduler() {
+    }
+
+    static abstract class Task {
+        final int priority;
+        final String host;
+        //发起方, 取消时按它区分, 见Request#tag(Object)
+        final Object tag;
+        long sequence;
+        Call call;
+        boolean cancelled;
+
+        Task(int priority, String host, Object tag) {
+            this.priority = priority;
+            this.host = host == null ? "" : host;
+            this.tag = tag;
+        }
+
+        //轮到它执行了,在锁外回调
+        abstract void onStart();
+
+        //还在排队就被取消了,在锁外回调
+        abstract void onCancel();
+    }
+
+    /**
+     * 同步请求用,阻塞到轮到它执行为止
+     */
+    static final class SyncTask extends Task {
+        private final CountDownLatch mLatch = new CountDownLatch(1);
+
+        SyncTask(int priority, String host, Object tag) {
+            super(priority, host, tag);
+        }
+
+        @Override
+        void onStart() {
+            mLatch.countDown();
+        }
+
+        @Override
+        void onCancel() {
+            mLatch.countDown();
+        }
+
+        /**
+         * @return false: 排队期间或者刚被放行时被取消了, 调用方仍然需要{@link #finish(Task)}
+         */
+        boolean await() {
+            try {
+                mLatch.await();
+            } catch (InterruptedException e) {
+                cancel(this);
+                Thread.currentThread().interrupt();
+            }
+            synchronized (RequestScheduler.class) {
+                return !cancelled;
+            }
+        }
+    }
+
+    static void enqueue(Task task) {
+        synchronized (RequestScheduler.class) {
+            task.sequence = sSequence++;
+            sPending.add(task);
+        }
+        promote();
+    }
+
+    //任务开始执行后把真正的Call交给调度器,以便取消
+    static void bind(Task task, Call call) {
+        boolean cancelled;
+        synchronized (RequestScheduler.class) {
+            task.call = call;
+            cancelled = task.cancelled;
+        }
+        if (cancelled) {
+            call.cancel();
+        }
+    }
+
+    static void finish(Task task) {
+        synchronized (RequestScheduler.class) {
+            if (!sRunning.remove(task)) {
+                return;
+            }
+            sRunningCount[task.priority]--;
+            Integer count = sRunningPerHost.get(task.host);
+            if (count != null && count > 1) {
+                sRunningPerHost.put(task.host, count - 1);
+            } else {
+                sRunningPerHost.remove(task.host);
+            }
+        }
+        promote();
+    }
+
+    /**
+     * 取消tag发起的指定优先级的请求: 还在排队的直接以失败结束, 已经发出去的取消掉OkHttp的Call。
+     * 其他页面的请求不受影响
+     *
+     * @param tag 发起请求时通过{@link Request#tag(Object)}设置的对象,按引用比较,不能为null
+     * @return 被取消的请求数
+     */
+    public static int cancel(@Request.Priority int priority, Object tag) {
+        if (tag == null) {
+            return 0;
+        }
+        List<Task> removed = new ArrayList<>();
+        List<Call> calls = new ArrayList<>();
+        int running = 0;
+        synchronized (RequestScheduler.class) {
+            Iterator<Task> iterator = sPending.iterator();
+            while (iterator.hasNext()) {
+                Task task = iterator.next();
+                if (task.priority == priority && task.tag == tag) {
+                    task.cancelled = true;
+                    iterator.remove();
+                    removed.add(task);
+                }
+            }
+            for (Task task : sRunning) {
+                if (task.priority == priority && task.tag == tag && !task.cancelled) {
+                    task.cancelled = true;
+                    running++;
+                    //还没来得及bind的话, bind的时候会发现已经被取消了
+                    if (task.call != null) {
+                        calls.add(task.call);
+                    }
+                }
+            }
+        }
+        for (Task task : removed) {
+            task.onCancel();
+        }
+        for (Call call : calls) {
+            call.cancel();
+        }
+        sCancelledCount.addAndGet(removed.size() + running);
+        return removed.size() + running;
+    }
+
+    //取消单个请求,还在排队的回调onCancel, 已经发出去的取消OkHttp的Call
+    static void cancel(Task task) {
+        boolean removed;
+        boolean running;
+        Call call;
+        synchronized (RequestScheduler.class) {
+            if (task.cancelled) {
+                return;
+            }
+            task.cancelled = true;
+            removed = sPending.remove(task);
+            running = !removed && sRunning.contains(task);
+            //还没来得及bind的话, bind的时候会发现已经被取消了
+            call = task.call;
+        }
+        if (removed) {
+            task.onCancel();
+            sCancelledCount.incrementAndGet();
+        } else if (running) {
+            if (call != null) {
+                call.cancel();
+            }
+            sCancelledCount.incrementAndGet();
+        }
+    }
+
+    //排队中或者进行中被取消掉的请求数
+    public static long getCancelledCount() {
+        return sCancelledCount.get();
+    }
+
+    private static void promote() {
+        List<Task> ready = new ArrayList<>();
+        synchronized (RequestScheduler.class) {
+            //PriorityQueue的迭代器不保证顺序,先排好序再挑
+            Task[] tasks = sPending.toArray(new Task[0]);
+            Arrays.sort(tasks, sPending.comparator());
+            for (Task task : tasks) {
+                if (sRunningCount[task.priority] >= MAX_RUNNING[task.priority]) {
+                    continue;
+                }
+                Integer hostCount = sRunningPerHost.get(task.host);
+                int running = hostCount == null ? 0 : hostCount;
+                if (task.priority != Request.IMMEDIATE && running >= MAX_RUNNING_PER_HOST) {
+                    continue;
+                }
+                sPending.remove(task);
+                sRunning.add(task);
+                sRunningCount[task.priority]++;
+                sRunningPerHost.put(task.host, running + 1);
+                ready.add(task);
+            }
+        }
+        for (Task task : ready) {
+            task.onStart();
+        }
+    }
+}
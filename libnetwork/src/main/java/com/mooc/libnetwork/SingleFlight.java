@@ -0,0 +1,54 @@
+package com.mooc.libnetwork;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 合并正在进行中的相同请求
+ * <p>
+ * 多个页面同时发起同一个GET(同url、同参数、同返回类型、同优先级、同tag)时,只有第一个真正发出网络请求,
+ * 后来的callback挂在它上面,等它完成后每个callback各自拿到一个ApiResponse: 网络只请求一次,
+ * body按原始响应字节分别解析,页面修改自己的数据不会影响别的页面。
+ * 优先级和tag不同的请求不合并,一个页面取消自己的请求不会让别的页面跟着失败
+ */
+public final class SingleFlight {
+    private static final HashMap<String, List<JsonCallback>> sFlights = new HashMap<>();
+    private static final AtomicLong sDedupedCount = new AtomicLong();
+
+    private SingleFlight() {
+    }
+
+    /**
+     * @return true: 当前没有相同的请求在进行,调用方需要自己发起请求; false: 已经挂到进行中的请求上了
+     */
+    static boolean join(String key, JsonCallback callback) {
+        synchronized (sFlights) {
+            List<JsonCallback> callbacks = sFlights.get(key);
+            if (callbacks != null) {
+                callbacks.add(callback);
+                sDedupedCount.incrementAndGet();
+                return false;
+            }
+            callbacks = new ArrayList<>();
+            callbacks.add(callback);
+            sFlights.put(key, callbacks);
+            return true;
+        }
+    }
+
+    //请求结束,取出所有等待结果的callback
+    static List<JsonCallback> complete(String key) {
+        synchronized (sFlights) {
+            List<JsonCallback> callbacks = sFlights.remove(key);
+            return callbacks == null ? Collections.<JsonCallback>emptyList() : callbacks;
+        }
+    }
+
+    //被合并掉、没有真正发出去的请求数
+    public static long getDedupedCount() {
+        return sDedupedCount.get();
+    }
+}
@@ -0,0 +1,131 @@
+package com.mooc.libnetwork;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 拼接带参数的url, 同时也是缓存的key
+ * <p>
+ * 1.参数按key排序,同样的参数不管添加的顺序如何,拼出来的url都一样,缓存才能命中
+ * 2.编码规则和URLEncoder(UTF-8)一致,但不需要编码的值直接追加,数字也不用先转成字符串
+ * 3.每个线程复用同一个StringBuilder
+ */
+final class UrlBuilder {
+    //超过这个长度的缓存key换成固定长度的摘要
+    static final int MAX_KEY_LENGTH = 200;
+    private static final String HASH_PREFIX = "sha1:";
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final ThreadLocal<StringBuilder> sBuffer = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
+
+    private UrlBuilder() {
+    }
+
+    static String build(String url, Params params) {
+        if (params.isEmpty()) {
+            return url;
+        }
+        StringBuilder builder = obtain();
+        builder.append(url);
+        char separator = url.indexOf('?') > 0 || url.indexOf('&') > 0 ? '&' : '?';
+        //Params本身就是按key有序的
+        for (int i = 0; i < params.size(); i++) {
+            builder.append(separator).append(params.keyAt(i)).append('=');
+            params.appendEncodedValue(i, builder);   //?k1=v1&k2=v2&k3=v3...
+            separator = '&';
+        }
+        return release(builder);
+    }
+
+    /**
+     * 太长的key作为Room的主键既占空间,比较起来也慢, 换成40位的SHA-1
+     */
+    static String hashIfLong(String key) {
+        if (key.length() <= MAX_KEY_LENGTH) {
+            return key;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(UTF_8));
+            StringBuilder builder = obtain();
+            builder.append(HASH_PREFIX);
+            for (byte b : digest) {
+                builder.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+            }
+            return release(builder);
+        } catch (NoSuchAlgorithmException e) {
+            return key;
+        }
+    }
+
+    private static StringBuilder obtain() {
+        StringBuilder builder = sBuffer.get();
+        builder.setLength(0);
+        return builder;
+    }
+
+    private static String release(StringBuilder builder) {
+        String result = builder.toString();
+        //偶尔出现的超长url不要一直占着内存
+        if (builder.capacity() > 4096) {
+            sBuffer.set(new StringBuilder(256));
+        }
+        return result;
+    }
+
+    //等价于URLEncoder.encode(value, "UTF-8")
+    static void appendEncoded(StringBuilder builder, String value) {
+        int length = value.length();
+        int i = 0;
+        while (i < length) {
+            char c = value.charAt(i);
+            if (isUnreserved(c)) {
+                builder.append(c);
+                i++;
+                continue;
+            }
+            if (c == ' ') {
+                builder.append('+');
+                i++;
+                continue;
+            }
+            int codePoint = Character.codePointAt(value, i);
+            int count = Character.charCount(codePoint);
+            if (count == 1 && Character.isSurrogate(c)) {
+                //不成对的代理字符,URLEncoder编码成'?'
+                codePoint = '?';
+            }
+            i += count;
+            if (codePoint < 0x80) {
+                appendByte(builder, codePoint);
+            } else if (codePoint < 0x800) {
+                appendByte(builder, 0xC0 | (codePoint >> 6));
+                appendByte(builder, 0x80 | (codePoint & 0x3F));
+            } else if (codePoint < 0x10000) {
+                appendByte(builder, 0xE0 | (codePoint >> 12));
+                appendByte(builder, 0x80 | ((codePoint >> 6) & 0x3F));
+                appendByte(builder, 0x80 | (codePoint & 0x3F));
+            } else {
+                appendByte(builder, 0xF0 | (codePoint >> 18));
+                appendByte(builder, 0x80 | ((codePoint >> 12) & 0x3F));
+                appendByte(builder, 0x80 | ((codePoint >> 6) & 0x3F));
+                appendByte(builder, 0x80 | (codePoint & 0x3F));
+            }
+        }
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '.' || c == '-' || c == '*' || c == '_';
+    }
+
+    private static void appendByte(StringBuilder builder, int b) {
+        builder.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+    }
+}
@@ -3,10 +3,13 @@ package com.mooc.libnetwork.cache;
 import androidx.annotation.NonNull;
 import androidx.room.Entity;
 import androidx.room.ForeignKey;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 import java.io.Serializable;
 
 @Entity(tableName = "cache"  //表名
+        //按最近访问时间淘汰时要排序
+        , indices = {@Index(value = "lastAccess")}
         // , indices = {@Index(value = "key", unique = false)}//本表索引，用于大量数据的查询优化，unique有时候需要保证数据表的某个或者某些字段只有唯一的记录，可以通过设置@Index注解的unique属性实现。以下实例代码实现了避免有两条记录包含一样的key值。
 
         //  , inheritSuperIndices = false//如果 该值为true,那么父类中标记的indices{}索引也会算作该表的索引
@@ -49,10 +52,29 @@ public class Cache implements Serializable {
     //@ColumnInfo(name = "_data"),指定该字段在表中的列的名字
     public byte[] data;
 
+    //过期时间点(毫秒),0表示永不过期
+    public long expires;
+
+    //缓存的是原始响应时,记录服务端返回的校验信息,用于条件请求
+    public String etag;
+    public String lastModified;
+
+    //data的字节数,统计总大小时不用把data读出来
+    public long size;
+    //写入时间和最近一次读取的时间(毫秒),按lastAccess做LRU淘汰
+    public long createdAt;
+    public long lastAccess;
+
+    //不是网络响应的缓存(比如登录用户),不参与按大小淘汰
+    public boolean pinned;
+
     //@Embedded 对象嵌套,ForeignTable对象中所有字段 也都会被映射到cache表中,
     //同时也支持ForeignTable 内部还有嵌套对象
     //public ForeignTable foreignTable;
 
+    public boolean isExpired(long now) {
+        return expires > 0 && expires <= now;
+    }
 }
 
 //public class ForeignTable implements Serializable {
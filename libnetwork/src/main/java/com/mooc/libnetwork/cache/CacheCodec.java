@@ -0,0 +1,17 @@
+package com.mooc.libnetwork.cache;
+
+/**
+ * 缓存数据的编解码器,决定{@link Cache#data}里存的是什么格式的二进制
+ * <p>
+ * 每条缓存的第一个字节写入编码它的codec的{@link #version()},读取时据此找到对应的codec,
+ * 所以更换默认codec之后,旧数据依然能被正确解码。
+ * 自定义codec通过{@link CacheManager#registerCodec(CacheCodec)}注册,version不能和已有的重复
+ */
+public interface CacheCodec {
+
+    byte version();
+
+    byte[] encode(Object body) throws Exception;
+
+    Object decode(byte[] data, int offset, int length) throws Exception;
+}
@@ -7,6 +7,8 @@ import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 import androidx.room.Update;
 
+import java.util.List;
+
 @Dao
 public interface CacheDao {
     @Insert(onConflict = OnConflictStrategy.REPLACE)
@@ -35,4 +37,26 @@ public interface CacheDao {
     //只能传递对象,删除时根据Cache中的主键 来比对的
     @Update(onConflict = OnConflictStrategy.REPLACE)
     int update(Cache cache);
+
+    @Query("update cache set lastAccess = :time where `key` = :key")
+    int touch(String key, long time);
+
+    @Query("update cache set pinned = 1 where `key` = :key")
+    int pin(String key);
+
+    @Query("select count(*) from cache")
+    int count();
+
+    @Query("select ifnull(sum(size), 0) from cache")
+    long totalSize();
+
+    @Query("delete from cache where expires > 0 and expires <= :now")
+    int deleteExpired(long now);
+
+    //最久没有访问的在前面, 固定的缓存不参与淘汰, offset用来跳过这一轮不能删的行
+    @Query("select `key`, size from cache where pinned = 0 order by lastAccess asc, `key` asc limit :limit offset :offset")
+    List<CacheFootprint> getLeastRecentlyUsed(int limit, int offset);
+
+    @Query("delete from cache where `key` in (:keys)")
+    int deleteKeys(List<String> keys);
 }
@@ -1,47 +1,129 @@
 package com.mooc.libnetwork.cache;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.room.TypeConverters;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
 import com.mooc.libcommon.global.AppGlobals;
 
-@Database(entities = {Cache.class}, version = 1)
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Database(entities = {Cache.class, Outbox.class}, version = 6)
 //数据读取、存储时数据转换器,比如将写入时将Date转换成Long存储，读取时把Long转换Date返回
 //@TypeConverters(DateConverter.class)
 public abstract class CacheDatabase extends RoomDatabase {
     private static final CacheDatabase database;
+    //WAL模式下读可以并发,两个线程就够了,再多只会在同一个文件锁上排队
+    private static final int QUERY_THREADS = 2;
+    private static final ExecutorService sQueryExecutor;
+
+    //迁移必须声明在下面的static块之前,静态初始化按书写顺序执行,放在后面的话addMigrations拿到的都是null
+    //v2: 增加过期时间列
+    static Migration sMigration1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("alter table cache add column expires INTEGER NOT NULL default 0");
+        }
+    };
+
+    //v3: 增加原始响应的ETag / Last-Modified
+    static Migration sMigration2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("alter table cache add column etag TEXT");
+            database.execSQL("alter table cache add column lastModified TEXT");
+        }
+    };
+
+    //v4: 增加离线写请求的发件箱
+    static Migration sMigration3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `outbox` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `method` TEXT, `url` TEXT, `params` TEXT, `headers` TEXT, `tag` TEXT, `createdAt` INTEGER NOT NULL, `attempts` INTEGER NOT NULL)");
+        }
+    };
+
+    //v5: 增加大小、写入时间、最近访问时间,用于按总大小做LRU淘汰, 老数据的访问时间按升级时间算
+    static Migration sMigration4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("alter table cache add column size INTEGER NOT NULL default 0");
+            database.execSQL("alter table cache add column createdAt INTEGER NOT NULL default 0");
+            database.execSQL("alter table cache add column lastAccess INTEGER NOT NULL default 0");
+            database.execSQL("update cache set size = ifnull(length(data), 0), createdAt = " + System.currentTimeMillis()
+                    + ", lastAccess = " + System.currentTimeMillis());
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_cache_lastAccess` ON `cache` (`lastAccess`)");
+        }
+    };
+
+    //v6: 增加pinned列,固定的缓存不参与LRU淘汰
+    static Migration sMigration5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("alter table cache add column pinned INTEGER NOT NULL default 0");
+        }
+    };
 
     static {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(QUERY_THREADS, QUERY_THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "cache-db-" + mCount.incrementAndGet());
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        sQueryExecutor = executor;
+
         //创建一个内存数据库
         //但是这种数据库的数据只存在于内存中，也就是进程被杀之后，数据随之丢失
         //Room.inMemoryDatabaseBuilder()
         database = Room.databaseBuilder(AppGlobals.getApplication(), CacheDatabase.class, "ppjoke_cache")
-                //是否允许在主线程进行查询
-                .allowMainThreadQueries()
+                //不允许在主线程进行查询,主线程请使用CacheManager的异步方法
+                //.allowMainThreadQueries()
                 //数据库创建和打开后的回调
                 //.addCallback()
                 //设置查询的线程池
-                //.setQueryExecutor()
+                .setQueryExecutor(sQueryExecutor)
                 //.openHelperFactory()
                 //room的日志模式
-                //.setJournalMode()
+                //写入落盘时不阻塞读取
+                .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING)
                 //数据库升级异常之后的回滚
                 //.fallbackToDestructiveMigration()
                 //数据库升级异常后根据指定版本进行回滚
                 //.fallbackToDestructiveMigrationFrom()
-                // .addMigrations(CacheDatabase.sMigration)
+                .addMigrations(CacheDatabase.sMigration1_2, CacheDatabase.sMigration2_3, CacheDatabase.sMigration3_4, CacheDatabase.sMigration4_5, CacheDatabase.sMigration5_6)
                 .build();
 
     }
 
     public abstract CacheDao getCache();
 
+    public abstract OutboxDao getOutbox();
+
     public static CacheDatabase get() {
         return database;
     }
 
+    /**
+     * 数据库专用的查询线程池,异步读取缓存都在这里执行
+     */
+    public static ExecutorService getQueryExecutorService() {
+        return sQueryExecutor;
+    }
+
 //    static Migration sMigration = new Migration(1, 3) {
 //        @Override
 //        public void migrate(@NonNull SupportSQLiteDatabase database) {
@@ -0,0 +1,9 @@
+package com.mooc.libnetwork.cache;
+
+/**
+ * cache表中的一行只取key和大小,淘汰时不用把data读出来
+ */
+public class CacheFootprint {
+    public String key;
+    public long size;
+}
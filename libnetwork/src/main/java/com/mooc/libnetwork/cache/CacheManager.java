@@ -1,89 +1,392 @@
 package com.mooc.libnetwork.cache;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import android.database.Cursor;
+import android.os.Looper;
+import android.util.Log;
+import android.util.SparseArray;
 
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 两级缓存: 内存(按字节数限制的LRU) + Room数据库
+ * <p>
+ * 写入先进内存,再由单线程异步落盘(write-behind),同一个key在落盘之前的多次写入只会写最后一次。
+ * 读取依次查 内存 -> 待落盘队列 -> 数据库
+ * <p>
+ * 数据库不允许在主线程访问,{@link #getCache(String)}应该在子线程调用, 主线程请用{@link #getCacheAsync(String)}
+ * 或者{@link #getCacheLiveData(String)}。在主线程调用时只会查内存和待落盘队列,不会去查数据库
+ * <p>
+ * 数据库的总大小由{@link CacheTrimWorker}定期按最近访问时间淘汰到{@link #setMaxDiskSize(long)}以内,
+ * 通过{@link #savePinned(String, Object)}保存的不参与淘汰
+ */
 public class CacheManager {
+    private static final String TAG = "CacheManager";
+    //内存缓存最多占用堆内存的1/32,且不超过8M
+    private static final int MEMORY_CACHE_MAX_BYTES = (int) Math.min(Runtime.getRuntime().maxMemory() / 32, 8 * 1024 * 1024);
+
+    private static final MemoryCache sMemoryCache = new MemoryCache(MEMORY_CACHE_MAX_BYTES);
+    //还没有写入数据库的缓存, data == null 表示待删除
+    private static final ConcurrentHashMap<String, Cache> sPendingWrites = new ConcurrentHashMap<>();
+    //单线程保证同一个key的写入、删除按调用顺序落盘
+    private static final Executor sDiskExecutor = Executors.newSingleThreadExecutor();
+
+    //数据库中缓存的总大小上限,默认20M
+    private static volatile long sMaxDiskSize = 20 * 1024 * 1024;
+    //淘汰时多删一些,留出余量,免得每次都刚好卡在上限
+    private static final float TRIM_TARGET_RATIO = 0.9f;
+    //最近访问时间精确到这个粒度就够了,避免每次读取都写一次数据库
+    private static final long TOUCH_INTERVAL = 10 * 60 * 1000;
+
+    private static final AtomicLong sDiskHitCount = new AtomicLong();
+    private static final AtomicLong sMissCount = new AtomicLong();
+
+    //java序列化流的魔数,没有codec头的旧缓存以它开头
+    private static final byte STREAM_MAGIC_0 = (byte) 0xAC;
+    private static final byte STREAM_MAGIC_1 = (byte) 0xED;
+
+    private static final SparseArray<CacheCodec> sCodecs = new SparseArray<>();
+    private static final CacheCodec sRawCodec = new RawResponseCodec();
+    private static volatile CacheCodec sCodec;
+
+    static {
+        registerCodec(new SerializableCodec());
+        registerCodec(new JsonCacheCodec());
+        registerCodec(sRawCodec);
+        sCodec = sCodecs.get(JsonCacheCodec.VERSION);
+    }
+
+    public static synchronized void registerCodec(CacheCodec codec) {
+        sCodecs.put(codec.version(), codec);
+    }
+
+    /**
+     * 设置写入缓存时使用的codec,已有的缓存仍然按各自写入时的codec解码
+     */
+    public static void setCodec(CacheCodec codec) {
+        registerCodec(codec);
+        sCodec = codec;
+    }
 
     //反序列,把二进制数据转换成java object对象
     private static Object toObject(byte[] data) {
-        ByteArrayInputStream bais = null;
-        ObjectInputStream ois = null;
+        if (data.length == 0) {
+            return null;
+        }
         try {
-            bais = new ByteArrayInputStream(data);
-            ois = new ObjectInputStream(bais);
-            return ois.readObject();
+            if (data.length > 1 && data[0] == STREAM_MAGIC_0 && data[1] == STREAM_MAGIC_1) {
+                return sCodecs.get(SerializableCodec.VERSION).decode(data, 0, data.length);
+            }
+            CacheCodec codec;
+            synchronized (CacheManager.class) {
+                codec = sCodecs.get(data[0]);
+            }
+            if (codec == null) {
+                Log.e(TAG, "toObject: unknown cache codec version " + data[0]);
+                return null;
+            }
+            return codec.decode(data, 1, data.length - 1);
         } catch (Exception e) {
             e.printStackTrace();
-        } finally {
-            try {
-                if (bais != null) {
-                    bais.close();
-                }
-                if (ois != null) {
-                    ois.close();
-                }
-            } catch (Exception ignore) {
-                ignore.printStackTrace();
-            }
         }
         return null;
     }
 
 
-    //序列化存储数据需要转换成二进制
-    private static <T> byte[] toByteArray(T body) {
-        ByteArrayOutputStream baos = null;
-        ObjectOutputStream oos = null;
+    //序列化存储数据需要转换成二进制, 第一个字节是codec的版本号
+    private static <T> byte[] toByteArray(CacheCodec codec, T body) {
         try {
-            baos = new ByteArrayOutputStream();
-            oos = new ObjectOutputStream(baos);
-            oos.writeObject(body);
-            oos.flush();
-            return baos.toByteArray();
+            byte[] payload = codec.encode(body);
+            byte[] data = new byte[payload.length + 1];
+            data[0] = codec.version();
+            System.arraycopy(payload, 0, data, 1, payload.length);
+            return data;
         } catch (Exception e) {
             e.printStackTrace();
-        } finally {
-            try {
-                if (baos != null) {
-                    baos.close();
-                }
-                if (oos != null) {
-                    oos.close();
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
         }
         return new byte[0];
     }
 
 
 
+    public static void setMaxDiskSize(long maxBytes) {
+        sMaxDiskSize = maxBytes;
+    }
+
     public static <T> void delete(String key, T body) {
         Cache cache = new Cache();
         cache.key = key;
-        cache.data = toByteArray(body);
-        CacheDatabase.get().getCache().delete(cache);
+        sMemoryCache.remove(key);
+        sPendingWrites.put(key, cache);
+        scheduleWrite(key);
     }
 
 
     public static <T> void save(String key, T body) {
+        save(key, body, 0);
+    }
+
+    /**
+     * @param ttl 缓存有效时长(毫秒), <=0 表示永不过期
+     */
+    public static <T> void save(String key, T body, long ttl) {
         Cache cache = new Cache();
         cache.key = key;
-        cache.data = toByteArray(body);
+        cache.data = toByteArray(sCodec, body);
+        cache.expires = ttl > 0 ? System.currentTimeMillis() + ttl : 0;
+        put(cache);
+    }
+
+    /**
+     * 不是网络响应、丢了就要出问题的数据(比如登录用户)用这个方法保存,不会被{@link #trimToSize()}淘汰,只能主动删除
+     */
+    public static <T> void savePinned(String key, T body) {
+        Cache cache = new Cache();
+        cache.key = key;
+        cache.data = toByteArray(sCodec, body);
+        cache.pinned = true;
+        put(cache);
+    }
+
+    /**
+     * 把已经存在的一条缓存改成固定的,用于升级前用{@link #save(String, Object)}保存的数据
+     */
+    public static void pin(final String key) {
+        sDiskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                CacheDatabase.get().getCache().pin(key);
+            }
+        });
+    }
 
-        CacheDatabase.get().getCache().save(cache);
+    /**
+     * 原样缓存网络响应的字节,读取时{@link #getCache(String)}返回byte[],由调用方按需解析
+     */
+    public static void saveResponse(String key, byte[] body, String etag, String lastModified) {
+        Cache cache = new Cache();
+        cache.key = key;
+        cache.data = toByteArray(sRawCodec, body);
+        cache.etag = etag;
+        cache.lastModified = lastModified;
+        put(cache);
     }
 
     public static Object getCache(String key) {
-        Cache cache = CacheDatabase.get().getCache().getCache(key);
-        if (cache != null && cache.data != null) {
-            return toObject(cache.data);
+        Cache cache = getEntry(key);
+        return cache == null ? null : toObject(cache.data);
+    }
+
+    /**
+     * 在数据库的查询线程池里读取缓存
+     */
+    public static Future<Object> getCacheAsync(final String key) {
+        return CacheDatabase.getQueryExecutorService().submit(new Callable<Object>() {
+            @Override
+            public Object call() {
+                return getCache(key);
+            }
+        });
+    }
+
+    /**
+     * 同{@link #getCacheAsync(String)},读取完成后把结果post出去,不存在时为null
+     */
+    public static LiveData<Object> getCacheLiveData(final String key) {
+        final MutableLiveData<Object> liveData = new MutableLiveData<>();
+        CacheDatabase.getQueryExecutorService().execute(new Runnable() {
+            @Override
+            public void run() {
+                liveData.postValue(getCache(key));
+            }
+        });
+        return liveData;
+    }
+
+    /**
+     * 取出{@link #saveResponse}缓存的那一行,主要用于读取ETag / Last-Modified发起条件请求
+     *
+     * @return 不存在、已过期或者不是原始响应缓存时返回null
+     */
+    public static Cache getResponseCache(String key) {
+        Cache cache = getEntry(key);
+        return cache != null && cache.data.length > 0 && cache.data[0] == RawResponseCodec.VERSION ? cache : null;
+    }
+
+    private static Cache getEntry(String key) {
+        Cache cache = sMemoryCache.get(key);
+        if (cache == null) {
+            cache = sPendingWrites.get(key);
+            if (cache == null) {
+                if (Looper.myLooper() == Looper.getMainLooper()) {
+                    //Room在主线程查询会直接抛异常,主线程只查内存,没有就当作没命中,应该改用getCacheAsync
+                    Log.w(TAG, "getEntry: main thread cache miss, skip database, key=" + key);
+                    sMissCount.incrementAndGet();
+                    return null;
+                }
+                cache = CacheDatabase.get().getCache().getCache(key);
+            }
+            if (cache != null && cache.data != null) {
+                sDiskHitCount.incrementAndGet();
+                sMemoryCache.put(key, cache);
+            } else {
+                sMissCount.incrementAndGet();
+            }
         }
-        return null;
+
+        if (cache == null || cache.data == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (cache.isExpired(now)) {
+            delete(key, null);
+            return null;
+        }
+        if (now - cache.lastAccess > TOUCH_INTERVAL) {
+            touch(key, now);
+            cache.lastAccess = now;
+        }
+        return cache;
+    }
+
+    private static void put(Cache cache) {
+        long now = System.currentTimeMillis();
+        cache.size = cache.data.length;
+        cache.createdAt = now;
+        cache.lastAccess = now;
+        sMemoryCache.put(cache.key, cache);
+        sPendingWrites.put(cache.key, cache);
+        scheduleWrite(cache.key);
+    }
+
+    public static CacheStats getStats() {
+        CacheStats stats = new CacheStats();
+        stats.memoryHitCount = sMemoryCache.hitCount();
+        stats.diskHitCount = sDiskHitCount.get();
+        stats.missCount = sMissCount.get();
+        stats.evictionCount = sMemoryCache.evictionCount();
+        stats.memorySize = sMemoryCache.size();
+        stats.memoryMaxSize = sMemoryCache.maxSize();
+        return stats;
+    }
+
+    /**
+     * 查询数据库中的行数和总大小,不能在主线程调用
+     */
+    public static CacheStats queryStats() {
+        CacheStats stats = getStats();
+        CacheDao dao = CacheDatabase.get().getCache();
+        stats.diskRowCount = dao.count();
+        stats.diskSize = dao.totalSize();
+        stats.diskMaxSize = sMaxDiskSize;
+        return stats;
+    }
+
+    /**
+     * 删除过期的缓存,再按最近访问时间从旧到新删除没有固定的缓存,直到总大小不超过上限的90%,不能在主线程调用
+     *
+     * @return 删除的行数
+     */
+    public static int trimToSize() {
+        CacheDao dao = CacheDatabase.get().getCache();
+        int deleted = dao.deleteExpired(System.currentTimeMillis());
+        long maxSize = sMaxDiskSize;
+        long total = dao.totalSize();
+        if (total <= maxSize) {
+            return deleted;
+        }
+        long target = (long) (maxSize * TRIM_TARGET_RATIO);
+        //跳过的行还留在表里,下一批从它们后面开始取,不然一整批都被跳过时就再也删不下去了
+        int skipped = 0;
+        while (total > target) {
+            List<CacheFootprint> oldest = dao.getLeastRecentlyUsed(50, skipped);
+            if (oldest.isEmpty()) {
+                break;
+            }
+            List<String> keys = new ArrayList<>();
+            for (CacheFootprint footprint : oldest) {
+                if (total <= target) {
+                    break;
+                }
+                //马上要被重新写入的不用删
+                if (sPendingWrites.containsKey(footprint.key)) {
+                    skipped++;
+                    continue;
+                }
+                keys.add(footprint.key);
+                total -= footprint.size;
+            }
+            if (!keys.isEmpty()) {
+                deleted += dao.deleteKeys(keys);
+                for (String key : keys) {
+                    sMemoryCache.remove(key);
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * 把WAL日志合并回数据库文件并截断; 空闲页超过1/4时VACUUM一次,把删除后留下的空间还给文件系统。不能在主线程调用
+     */
+    public static void compact() {
+        SupportSQLiteDatabase database = CacheDatabase.get().getOpenHelper().getWritableDatabase();
+        long pageCount = queryLong(database, "PRAGMA page_count");
+        long freePages = queryLong(database, "PRAGMA freelist_count");
+        if (pageCount > 0 && freePages * 4 > pageCount) {
+            database.execSQL("VACUUM");
+        }
+        if (database.isWriteAheadLoggingEnabled()) {
+            queryLong(database, "PRAGMA wal_checkpoint(TRUNCATE)");
+        }
+    }
+
+    private static long queryLong(SupportSQLiteDatabase database, String sql) {
+        Cursor cursor = database.query(sql);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void touch(final String key, final long time) {
+        sDiskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                CacheDatabase.get().getCache().touch(key, time);
+            }
+        });
+    }
+
+    private static void scheduleWrite(final String key) {
+        sDiskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                //同一个key排了多次任务时,第一次就已经把最新的数据写掉了,后面的直接跳过
+                Cache cache = sPendingWrites.get(key);
+                if (cache == null) {
+                    return;
+                }
+                CacheDao dao = CacheDatabase.get().getCache();
+                if (cache.data == null) {
+                    dao.delete(cache);
+                } else {
+                    dao.save(cache);
+                }
+                //落盘期间如果又有新的写入,保留新的那一条等下一次任务处理
+                sPendingWrites.remove(key, cache);
+            }
+        });
     }
 }
@@ -0,0 +1,38 @@
+package com.mooc.libnetwork.cache;
+
+/**
+ * {@link CacheManager}的命中统计快照
+ */
+public class CacheStats {
+    //内存缓存命中次数
+    public long memoryHitCount;
+    //内存未命中,从数据库(或待写队列)中读到的次数
+    public long diskHitCount;
+    //内存和数据库都没有命中的次数
+    public long missCount;
+    //内存缓存因为超出容量被淘汰的条目数
+    public long evictionCount;
+    //内存缓存当前占用/最大字节数
+    public int memorySize;
+    public int memoryMaxSize;
+    //数据库中的行数和总字节数,只有CacheManager.queryStats()会填
+    public int diskRowCount;
+    public long diskSize;
+    public long diskMaxSize;
+
+    public float hitRate() {
+        long total = memoryHitCount + diskHitCount + missCount;
+        return total == 0 ? 0 : (memoryHitCount + diskHitCount) / (float) total;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{memoryHit=" + memoryHitCount
+                + ", diskHit=" + diskHitCount
+                + ", miss=" + missCount
+                + ", eviction=" + evictionCount
+                + ", memory=" + memorySize + "/" + memoryMaxSize
+                + ", disk=" + diskRowCount + " rows, " + diskSize + "/" + diskMaxSize
+                + "}";
+    }
+}
@@ -0,0 +1,42 @@
+package com.mooc.libnetwork.cache;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.parser.Feature;
+import com.alibaba.fastjson.parser.ParserConfig;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+
+import java.nio.charset.Charset;
+
+/**
+ * 默认的缓存codec: fastjson + 类型信息
+ * <p>
+ * 只写字段值和一个@type,不像ObjectOutputStream那样写整套类描述信息,体积和解码耗时都小很多。
+ * 解码时只允许反序列化出 {@link #ACCEPT_PACKAGE} 下的类型
+ */
+public class JsonCacheCodec implements CacheCodec {
+    public static final byte VERSION = 2;
+    private static final String ACCEPT_PACKAGE = "com.mooc.";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ParserConfig parserConfig;
+
+    public JsonCacheCodec() {
+        parserConfig = new ParserConfig();
+        parserConfig.addAccept(ACCEPT_PACKAGE);
+    }
+
+    @Override
+    public byte version() {
+        return VERSION;
+    }
+
+    @Override
+    public byte[] encode(Object body) {
+        return JSON.toJSONBytes(body, SerializerFeature.WriteClassName, SerializerFeature.DisableCircularReferenceDetect);
+    }
+
+    @Override
+    public Object decode(byte[] data, int offset, int length) {
+        return JSON.parseObject(new String(data, offset, length, UTF_8), Object.class, parserConfig, Feature.SupportAutoType);
+    }
+}
@@ -0,0 +1,25 @@
+package com.mooc.libnetwork.cache;
+
+import android.util.LruCache;
+
+/**
+ * 挡在CacheDao前面的一级内存缓存
+ * <p>
+ * 按字节数而不是条目数限制大小,淘汰策略是LRU。
+ * 只缓存序列化之后的Cache行,每次读取仍然反序列化出新对象,避免多个列表共享同一份可变的Feed
+ */
+class MemoryCache extends LruCache<String, Cache> {
+
+    MemoryCache(int maxBytes) {
+        super(maxBytes);
+    }
+
+    @Override
+    protected int sizeOf(String key, Cache value) {
+        int size = key.length() * 2;
+        if (value.data != null) {
+            size += value.data.length;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,34 @@
+package com.mooc.libnetwork.cache;
+
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * 没能发到服务端的写请求,等待OutboxWorker重放
+ */
+@Entity(tableName = "outbox")
+public class Outbox {
+    //自增主键,同时也是重放的顺序
+    @PrimaryKey(autoGenerate = true)
+    public long id;
+
+    //GET 或者 POST
+    public String method;
+
+    //完整的url,不含参数
+    public String url;
+
+    //参数,json格式,值都已经转成了String
+    public String params;
+
+    //header,json格式
+    public String headers;
+
+    //业务方用来认领重放结果的标记,比如 comment:itemId
+    public String tag;
+
+    public long createdAt;
+
+    //已经重放失败的次数
+    public int attempts;
+}
@@ -0,0 +1,28 @@
+package com.mooc.libnetwork.cache;
+
+import androidx.room.Dao;
+import androidx.room.Delete;
+import androidx.room.Insert;
+import androidx.room.Query;
+import androidx.room.Update;
+
+import java.util.List;
+
+@Dao
+public interface OutboxDao {
+    @Insert
+    long save(Outbox outbox);
+
+    //按入队的顺序重放
+    @Query("select *from outbox order by id asc")
+    List<Outbox> getAll();
+
+    @Query("select count(*) from outbox")
+    int count();
+
+    @Delete
+    int delete(Outbox outbox);
+
+    @Update
+    int update(Outbox outbox);
+}
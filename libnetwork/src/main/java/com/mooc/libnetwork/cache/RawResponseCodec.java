@@ -0,0 +1,27 @@
+package com.mooc.libnetwork.cache;
+
+import java.util.Arrays;
+
+/**
+ * 原样存储网络响应的字节,不做任何转换
+ * <p>
+ * 网络请求成功后不必再把解析好的对象序列化一遍,读缓存时再按需要的类型解析,见{@link CacheManager#saveResponse}
+ */
+public class RawResponseCodec implements CacheCodec {
+    public static final byte VERSION = 3;
+
+    @Override
+    public byte version() {
+        return VERSION;
+    }
+
+    @Override
+    public byte[] encode(Object body) {
+        return (byte[]) body;
+    }
+
+    @Override
+    public Object decode(byte[] data, int offset, int length) {
+        return Arrays.copyOfRange(data, offset, offset + length);
+    }
+}
@@ -0,0 +1,41 @@
+package com.mooc.libnetwork.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * java原生序列化,体积大、解码慢,只用来兼容之前存下的缓存
+ */
+public class SerializableCodec implements CacheCodec {
+    public static final byte VERSION = 1;
+
+    @Override
+    public byte version() {
+        return VERSION;
+    }
+
+    @Override
+    public byte[] encode(Object body) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        try {
+            oos.writeObject(body);
+            oos.flush();
+            return baos.toByteArray();
+        } finally {
+            oos.close();
+        }
+    }
+
+    @Override
+    public Object decode(byte[] data, int offset, int length) throws Exception {
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data, offset, length));
+        try {
+            return ois.readObject();
+        } finally {
+            ois.close();
+        }
+    }
+}
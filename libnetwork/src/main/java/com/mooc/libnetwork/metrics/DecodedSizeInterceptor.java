@@ -0,0 +1,64 @@
+package com.mooc.libnetwork.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * 统计解压之后的body字节数
+ * <p>
+ * 作为应用层拦截器,拿到的是OkHttp透明解压(gzip)之后的body;
+ * MetricsEventListener记录的是网络上实际传输的字节数, 两者一比就是压缩率
+ */
+public class DecodedSizeInterceptor implements Interceptor {
+
+    @NotNull
+    @Override
+    public Response intercept(@NotNull Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+        final ResponseBody body = response.body();
+        if (body == null) {
+            return response;
+        }
+        final String path = NetworkMetrics.normalize(response.request().url().encodedPath());
+        BufferedSource source = Okio.buffer(new ForwardingSource(body.source()) {
+            private long mBytes;
+            private boolean mRecorded;
+
+            @Override
+            public long read(@NotNull Buffer sink, long byteCount) throws IOException {
+                long read = super.read(sink, byteCount);
+                if (read == -1) {
+                    record();
+                } else {
+                    mBytes += read;
+                }
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                record();
+                super.close();
+            }
+
+            private void record() {
+                if (!mRecorded) {
+                    mRecorded = true;
+                    NetworkMetrics.recordDecodedBytes(path, mBytes);
+                }
+            }
+        });
+        return response.newBuilder()
+                .body(ResponseBody.create(body.contentType(), body.contentLength(), source))
+                .build();
+    }
+}
@@ -0,0 +1,56 @@
+package com.mooc.libnetwork.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 单个接口的统计快照, 耗时单位都是毫秒
+ */
+public class EndpointStats {
+    //比如 /feeds/queryHotFeedsList
+    public String path;
+    public long callCount;
+    public long failedCount;
+    //累计发送/接收的body字节数, 接收的是解压之前的
+    public long requestBytes;
+    public long responseBytes;
+    //解压之后的响应body字节数, 只统计读完或者关闭了的body
+    public long decodedBytes;
+    //单次响应body大小的p50/p99
+    public long responseBytesP50;
+    public long responseBytesP99;
+    //key见NetworkMetrics.PHASE_*
+    public Map<String, Phase> phases = new LinkedHashMap<>();
+
+    public static class Phase {
+        public long count;
+        public long p50;
+        public long p90;
+        public long p99;
+        public long max;
+        public long mean;
+
+        @Override
+        public String toString() {
+            return "{n=" + count + ", p50=" + p50 + ", p90=" + p90 + ", p99=" + p99 + ", max=" + max + "}";
+        }
+    }
+
+    //网络传输字节数/解压后字节数, 1表示没有压缩
+    public float compressionRatio() {
+        return decodedBytes == 0 ? 1 : responseBytes / (float) decodedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "EndpointStats{" + path
+                + ", calls=" + callCount
+                + ", failed=" + failedCount
+                + ", sent=" + requestBytes
+                + ", received=" + responseBytes
+                + ", decoded=" + decodedBytes
+                + ", body p50/p99=" + responseBytesP50 + "/" + responseBytesP99
+                + ", phases=" + phases
+                + "}";
+    }
+}
@@ -0,0 +1,99 @@
+package com.mooc.libnetwork.metrics;
+
+/**
+ * 对数分桶的直方图,思路和HdrHistogram一样
+ * <p>
+ * 小于16的值每个值一个桶,之后每个2的幂区间再等分成8个桶,相对误差不超过1/8。
+ * 最大记录到2^35,微秒够用9个多小时,字节数够用32G,超出的都记在最后一个桶里。
+ * 每个直方图固定272个long,记录是O(1)的,不保存原始数据
+ */
+public class Histogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int LINEAR_COUNT = SUB_COUNT * 2;
+    private static final int MAX_EXPONENT = 35;
+    private static final int BUCKET_COUNT = LINEAR_COUNT + (MAX_EXPONENT - SUB_BITS) * SUB_COUNT;
+
+    private final long[] mCounts = new long[BUCKET_COUNT];
+    private long mTotalCount;
+    private long mSum;
+    private long mMax;
+
+    public synchronized void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        mCounts[indexOf(value)]++;
+        mTotalCount++;
+        mSum += value;
+        if (value > mMax) {
+            mMax = value;
+        }
+    }
+
+    public synchronized long getTotalCount() {
+        return mTotalCount;
+    }
+
+    public synchronized long getSum() {
+        return mSum;
+    }
+
+    public synchronized long getMax() {
+        return mMax;
+    }
+
+    /**
+     * @param percentile 0~100
+     * @return 该百分位所在桶的上界, 不会超过记录过的最大值
+     */
+    public synchronized long getValueAtPercentile(double percentile) {
+        if (mTotalCount == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(mTotalCount * Math.min(percentile, 100) / 100);
+        if (target < 1) {
+            target = 1;
+        }
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += mCounts[i];
+            if (count >= target) {
+                //最后一个桶没有上界,里面的值可能比它的"上界"还大
+                return i == BUCKET_COUNT - 1 ? mMax : Math.min(upperBoundOf(i), mMax);
+            }
+        }
+        return mMax;
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mCounts[i] = 0;
+        }
+        mTotalCount = 0;
+        mSum = 0;
+        mMax = 0;
+    }
+
+    static int indexOf(long value) {
+        if (value < LINEAR_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return LINEAR_COUNT + (exponent - SUB_BITS - 1) * SUB_COUNT + sub;
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < LINEAR_COUNT) {
+            return index;
+        }
+        int exponent = (index - LINEAR_COUNT) / SUB_COUNT + SUB_BITS + 1;
+        int sub = (index - LINEAR_COUNT) % SUB_COUNT;
+        long width = 1L << (exponent - SUB_BITS);
+        return (SUB_COUNT + sub) * width + width - 1;
+    }
+}
@@ -0,0 +1,120 @@
+package com.mooc.libnetwork.metrics;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Response;
+
+/**
+ * 每个Call一个实例,记录各阶段的开始时间,结束时交给NetworkMetrics
+ * <p>
+ * 复用连接的请求没有dns/connect/tls阶段,所以这几个阶段的样本数会少于请求数
+ */
+public class MetricsEventListener extends EventListener {
+
+    public static final Factory FACTORY = new Factory() {
+        @NotNull
+        @Override
+        public EventListener create(@NotNull Call call) {
+            return new MetricsEventListener(NetworkMetrics.normalize(call.request().url().encodedPath()));
+        }
+    };
+
+    private final String mPath;
+    private long mCallStart;
+    private long mDnsStart;
+    private long mConnectStart;
+    private long mSecureConnectStart;
+    private long mRequestStart;
+    private long mResponseBodyStart;
+    private long mRequestBytes;
+    private long mResponseBytes = -1;
+
+    private MetricsEventListener(String path) {
+        mPath = path;
+    }
+
+    @Override
+    public void callStart(@NotNull Call call) {
+        mCallStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsStart(@NotNull Call call, @NotNull String domainName) {
+        mDnsStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(@NotNull Call call, @NotNull String domainName, @NotNull List<InetAddress> inetAddressList) {
+        NetworkMetrics.recordPhase(mPath, NetworkMetrics.PHASE_DNS, System.nanoTime() - mDnsStart);
+    }
+
+    @Override
+    public void connectStart(@NotNull Call call, @NotNull InetSocketAddress inetSocketAddress, @NotNull Proxy proxy) {
+        mConnectStart = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectStart(@NotNull Call call) {
+        mSecureConnectStart = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectEnd(@NotNull Call call, @Nullable Handshake handshake) {
+        NetworkMetrics.recordPhase(mPath, NetworkMetrics.PHASE_TLS, System.nanoTime() - mSecureConnectStart);
+    }
+
+    @Override
+    public void connectEnd(@NotNull Call call, @NotNull InetSocketAddress inetSocketAddress, @NotNull Proxy proxy, @Nullable Protocol protocol) {
+        NetworkMetrics.recordPhase(mPath, NetworkMetrics.PHASE_CONNECT, System.nanoTime() - mConnectStart);
+    }
+
+    @Override
+    public void requestHeadersStart(@NotNull Call call) {
+        mRequestStart = System.nanoTime();
+    }
+
+    @Override
+    public void requestBodyEnd(@NotNull Call call, long byteCount) {
+        mRequestBytes = byteCount;
+    }
+
+    @Override
+    public void responseHeadersStart(@NotNull Call call) {
+        if (mRequestStart > 0) {
+            NetworkMetrics.recordPhase(mPath, NetworkMetrics.PHASE_TTFB, System.nanoTime() - mRequestStart);
+        }
+    }
+
+    @Override
+    public void responseBodyStart(@NotNull Call call) {
+        mResponseBodyStart = System.nanoTime();
+    }
+
+    @Override
+    public void responseBodyEnd(@NotNull Call call, long byteCount) {
+        NetworkMetrics.recordPhase(mPath, NetworkMetrics.PHASE_BODY, System.nanoTime() - mResponseBodyStart);
+        mResponseBytes = byteCount;
+    }
+
+    @Override
+    public void callEnd(@NotNull Call call) {
+        NetworkMetrics.recordPhase(mPath, NetworkMetrics.PHASE_TOTAL, System.nanoTime() - mCallStart);
+        NetworkMetrics.recordCall(mPath, false, mRequestBytes, mResponseBytes);
+    }
+
+    @Override
+    public void callFailed(@NotNull Call call, @NotNull IOException ioe) {
+        NetworkMetrics.recordCall(mPath, true, mRequestBytes, mResponseBytes);
+    }
+}
@@ -0,0 +1,148 @@
+package com.mooc.libnetwork.metrics;
+
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按接口路径统计网络请求各个阶段的耗时和body大小
+ * <p>
+ * DNS/建连/TLS/首字节/读body由{@link MetricsEventListener}记录,
+ * 解析由Request在转换完成后调用{@link #recordParse(String, long)}记录。
+ * 只在内存里保留直方图,通过{@link #snapshot()}取出某一时刻的百分位
+ */
+public class NetworkMetrics {
+    public static final String PHASE_DNS = "dns";
+    public static final String PHASE_CONNECT = "connect";
+    public static final String PHASE_TLS = "tls";
+    //发出请求头到收到响应头
+    public static final String PHASE_TTFB = "ttfb";
+    public static final String PHASE_BODY = "body";
+    public static final String PHASE_PARSE = "parse";
+    //callStart到callEnd,不含解析
+    public static final String PHASE_TOTAL = "total";
+
+    private static final String[] PHASES = {PHASE_DNS, PHASE_CONNECT, PHASE_TLS, PHASE_TTFB, PHASE_BODY, PHASE_PARSE, PHASE_TOTAL};
+
+    private static final ConcurrentHashMap<String, Endpoint> sEndpoints = new ConcurrentHashMap<>();
+    //ApiService的baseUrl中的路径部分,比如 /serverdemo, 统计时去掉
+    private static volatile String sBasePath = "";
+
+    private static class Endpoint {
+        final AtomicLong callCount = new AtomicLong();
+        final AtomicLong failedCount = new AtomicLong();
+        final AtomicLong requestBytes = new AtomicLong();
+        final AtomicLong responseBytes = new AtomicLong();
+        final AtomicLong decodedBytes = new AtomicLong();
+        final Histogram responseSize = new Histogram();
+        //下标和PHASES一致,单位微秒
+        final Histogram[] phases = new Histogram[PHASES.length];
+
+        Endpoint() {
+            for (int i = 0; i < phases.length; i++) {
+                phases[i] = new Histogram();
+            }
+        }
+    }
+
+    public static void setBasePath(String basePath) {
+        sBasePath = basePath == null || basePath.equals("/") ? "" : basePath;
+    }
+
+    static String normalize(String encodedPath) {
+        String basePath = sBasePath;
+        if (!TextUtils.isEmpty(basePath) && encodedPath.startsWith(basePath)) {
+            return encodedPath.substring(basePath.length());
+        }
+        return encodedPath;
+    }
+
+    private static Endpoint endpoint(String path) {
+        Endpoint endpoint = sEndpoints.get(path);
+        if (endpoint == null) {
+            Endpoint created = new Endpoint();
+            endpoint = sEndpoints.putIfAbsent(path, created);
+            if (endpoint == null) {
+                endpoint = created;
+            }
+        }
+        return endpoint;
+    }
+
+    static void recordPhase(String path, String phase, long nanos) {
+        for (int i = 0; i < PHASES.length; i++) {
+            if (PHASES[i].equals(phase)) {
+                endpoint(path).phases[i].record(nanos / 1000);
+                return;
+            }
+        }
+    }
+
+    static void recordCall(String path, boolean failed, long requestBytes, long responseBytes) {
+        Endpoint endpoint = endpoint(path);
+        endpoint.callCount.incrementAndGet();
+        if (failed) {
+            endpoint.failedCount.incrementAndGet();
+        }
+        if (requestBytes > 0) {
+            endpoint.requestBytes.addAndGet(requestBytes);
+        }
+        if (responseBytes >= 0) {
+            endpoint.responseBytes.addAndGet(responseBytes);
+            endpoint.responseSize.record(responseBytes);
+        }
+    }
+
+    static void recordDecodedBytes(String path, long bytes) {
+        endpoint(path).decodedBytes.addAndGet(bytes);
+    }
+
+    /**
+     * @param encodedPath HttpUrl#encodedPath()
+     * @param nanos       解析响应body花费的时间
+     */
+    public static void recordParse(String encodedPath, long nanos) {
+        recordPhase(normalize(encodedPath), PHASE_PARSE, nanos);
+    }
+
+    public static List<EndpointStats> snapshot() {
+        List<EndpointStats> list = new ArrayList<>();
+        for (Map.Entry<String, Endpoint> entry : sEndpoints.entrySet()) {
+            Endpoint endpoint = entry.getValue();
+            EndpointStats stats = new EndpointStats();
+            stats.path = entry.getKey();
+            stats.callCount = endpoint.callCount.get();
+            stats.failedCount = endpoint.failedCount.get();
+            stats.requestBytes = endpoint.requestBytes.get();
+            stats.responseBytes = endpoint.responseBytes.get();
+            stats.decodedBytes = endpoint.decodedBytes.get();
+            stats.responseBytesP50 = endpoint.responseSize.getValueAtPercentile(50);
+            stats.responseBytesP99 = endpoint.responseSize.getValueAtPercentile(99);
+            for (int i = 0; i < PHASES.length; i++) {
+                Histogram histogram = endpoint.phases[i];
+                long count = histogram.getTotalCount();
+                if (count == 0) {
+                    continue;
+                }
+                EndpointStats.Phase phase = new EndpointStats.Phase();
+                phase.count = count;
+                phase.p50 = histogram.getValueAtPercentile(50) / 1000;
+                phase.p90 = histogram.getValueAtPercentile(90) / 1000;
+                phase.p99 = histogram.getValueAtPercentile(99) / 1000;
+                phase.max = histogram.getMax() / 1000;
+                phase.mean = histogram.getSum() / count / 1000;
+                stats.phases.put(PHASES[i], phase);
+            }
+            list.add(stats);
+        }
+        return list;
+    }
+
+    public static void reset() {
+        sEndpoints.clear();
+    }
+}
@@ -0,0 +1,159 @@
+package com.mooc.libnetwork;
+
+import com.mooc.libnetwork.metrics.DecodedSizeInterceptor;
+import com.mooc.libnetwork.metrics.EndpointStats;
+import com.mooc.libnetwork.metrics.MetricsEventListener;
+import com.mooc.libnetwork.metrics.NetworkMetrics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import okhttp3.FormBody;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.GzipSink;
+import okio.GzipSource;
+import okio.Okio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 请求body的gzip压缩和响应解压统计,MockWebServer充当服务端
+ */
+public class GzipTest {
+    private static final String PATH = "/feeds/queryHotFeedsList";
+
+    private MockWebServer mServer;
+    private OkHttpClient mClient;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new MockWebServer();
+        mServer.start();
+        //和ApiService里一样统计网络字节数和解压后的字节数
+        mClient = new OkHttpClient.Builder()
+                .eventListenerFactory(MetricsEventListener.FACTORY)
+                .addInterceptor(new DecodedSizeInterceptor())
+                .build();
+        NetworkMetrics.setBasePath(null);
+        NetworkMetrics.reset();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.shutdown();
+    }
+
+    private static String longText(int length) {
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < length) {
+            builder.append("当中国地图出来那一幕，我眼泪都出来了！太震撼了！");
+        }
+        return builder.toString();
+    }
+
+    private okhttp3.Request post(String text, boolean gzip) {
+        PostRequest<Object> request = new PostRequest<>(mServer.url("/comment/addComment").toString());
+        request.addParam("itemId", 6739143063064549000L)
+                .addParam("commentText", text);
+        request.gzip(gzip);
+        return request.generateRequest(new okhttp3.Request.Builder());
+    }
+
+    private static String formString(String text) throws IOException {
+        Buffer buffer = new Buffer();
+        new FormBody.Builder()
+                .add("itemId", "6739143063064549000")
+                .add("commentText", text)
+                .build()
+                .writeTo(buffer);
+        return buffer.readUtf8();
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        Buffer buffer = new Buffer();
+        okio.BufferedSink sink = Okio.buffer(new GzipSink(buffer));
+        sink.writeUtf8(text);
+        sink.close();
+        return buffer.readByteArray();
+    }
+
+    @Test
+    public void smallFormIsNotCompressed() throws Exception {
+        okhttp3.Request request = post("short", true);
+        assertNull(request.header("Content-Encoding"));
+    }
+
+    @Test
+    public void disabledByDefault() throws Exception {
+        okhttp3.Request request = post(longText(4096), false);
+        assertNull(request.header("Content-Encoding"));
+    }
+
+    @Test
+    public void largeFormIsCompressed() throws Exception {
+        String text = longText(4096);
+        mServer.enqueue(new MockResponse());
+        mClient.newCall(post(text, true)).execute().close();
+
+        RecordedRequest recorded = mServer.takeRequest();
+        assertEquals("gzip", recorded.getHeader("Content-Encoding"));
+        String plain = formString(text);
+        assertTrue(recorded.getBodySize() < plain.length());
+        Buffer body = recorded.getBody();
+        String decoded = Okio.buffer(new GzipSource(body)).readUtf8();
+        assertEquals(plain, decoded);
+    }
+
+    /**
+     * 500条帖子的列表页用gzip返回,统计里的网络字节数是压缩后的,解压字节数是原始大小
+     */
+    @Test
+    public void responseDecompressionStats() throws Exception {
+        String payload = JsonConvertTest.feedList(500);
+        byte[] compressed = gzip(payload);
+        final int rounds = 20;
+        long gzipTime = 0;
+        long plainTime = 0;
+        for (int i = 0; i < rounds; i++) {
+            mServer.enqueue(new MockResponse()
+                    .addHeader("Content-Encoding", "gzip")
+                    .setBody(new Buffer().write(compressed)));
+            long start = System.nanoTime();
+            Response response = mClient.newCall(new okhttp3.Request.Builder().url(mServer.url(PATH)).build()).execute();
+            assertEquals(payload, response.body().string());
+            gzipTime += System.nanoTime() - start;
+        }
+        EndpointStats stats = null;
+        for (EndpointStats item : NetworkMetrics.snapshot()) {
+            if (PATH.equals(item.path)) {
+                stats = item;
+            }
+        }
+        assertNotNull(stats);
+        assertEquals(rounds, stats.callCount);
+        assertEquals((long) rounds * payload.getBytes("UTF-8").length, stats.decodedBytes);
+        assertEquals((long) rounds * compressed.length, stats.responseBytes);
+        assertTrue(stats.compressionRatio() < 0.5f);
+
+        for (int i = 0; i < rounds; i++) {
+            mServer.enqueue(new MockResponse().setBody(payload));
+            long start = System.nanoTime();
+            mClient.newCall(new okhttp3.Request.Builder().url(mServer.url("/plain")).build()).execute().body().string();
+            plainTime += System.nanoTime() - start;
+        }
+        System.out.println(String.format("%d bytes, gzip %d bytes (%.2f), gzip %d us, plain %d us",
+                payload.getBytes("UTF-8").length, compressed.length, stats.compressionRatio(),
+                gzipTime / rounds / 1000, plainTime / rounds / 1000));
+    }
+}
@@ -0,0 +1,108 @@
+package com.mooc.libnetwork;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.TypeReference;
+import com.mooc.libnetwork.cache.JsonCacheCodecTest.TestFeed;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class JsonConvertTest {
+    private static final Type FEED_LIST = new TypeReference<ArrayList<TestFeed>>() {
+    }.getType();
+
+    private static String envelope(String data) {
+        return "{\"status\":200,\"message\":\"成功\",\"data\":{\"count\":1,\"data\":" + data + ",\"extra\":{\"a\":[1,2]}},\"trace\":\"x\"}";
+    }
+
+    static String feedList(int count) {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"id\":").append(i)
+                    .append(",\"itemId\":").append(6739143063064549000L + i)
+                    .append(",\"itemType\":2,\"createTime\":1569079017,\"duration\":299.435")
+                    .append(",\"feeds_text\":\"当中国地图出来那一幕，我眼泪都出来了！\"")
+                    .append(",\"url\":\"https://pipijoke.oss-cn-hangzhou.aliyuncs.com/6739143063064549643.mp4\"")
+                    .append(",\"cover\":\"\",\"width\":640,\"height\":368")
+                    .append(",\"author\":{\"userId\":3223400206308231,\"name\":\"user").append(i)
+                    .append("\",\"avatar\":\"\"}}");
+        }
+        return builder.append(']').toString();
+    }
+
+    @Test
+    public void readsDataDataAndSkipsOtherFields() {
+        List<TestFeed> feeds = (List<TestFeed>) new JsonConvert().convert(envelope(feedList(3)), FEED_LIST);
+        assertEquals(3, feeds.size());
+        assertEquals(6739143063064549002L, feeds.get(2).itemId);
+        assertEquals("user2", feeds.get(2).author.name);
+    }
+
+    @Test
+    public void readsFromReader() {
+        JSONObject body = (JSONObject) new JsonConvert().convert(new StringReader(envelope("{\"hasLiked\":true}")), JSONObject.class);
+        assertEquals(true, body.getBooleanValue("hasLiked"));
+    }
+
+    @Test
+    public void nullData() {
+        JsonConvert convert = new JsonConvert();
+        assertNull(convert.convert("{\"status\":200,\"data\":null}", JSONObject.class));
+        assertNull(convert.convert(envelope("null"), JSONObject.class));
+        assertNull(convert.convert("{\"status\":500,\"message\":\"error\"}", JSONObject.class));
+    }
+
+    //改造之前的做法: 整棵解析成JSONObject,取出data.data再toString解析一遍
+    private static Object convertTwice(String response, Type type) {
+        JSONObject jsonObject = JSON.parseObject(response);
+        JSONObject data = jsonObject.getJSONObject("data");
+        if (data != null) {
+            Object data1 = data.get("data");
+            if (data1 != null) {
+                return JSON.parseObject(data1.toString(), type);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 500条帖子的列表页,对比流式解析和两遍解析的耗时
+     */
+    @Test
+    public void benchmarkAgainstTwoPass() {
+        String response = envelope(feedList(500));
+        JsonConvert convert = new JsonConvert();
+        assertEquals(500, ((List<?>) convert.convert(response, FEED_LIST)).size());
+        assertEquals(500, ((List<?>) convertTwice(response, FEED_LIST)).size());
+
+        final int warmup = 50;
+        final int rounds = 200;
+        for (int i = 0; i < warmup; i++) {
+            convert.convert(response, FEED_LIST);
+            convertTwice(response, FEED_LIST);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            convert.convert(response, FEED_LIST);
+        }
+        long streaming = (System.nanoTime() - start) / rounds;
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            convertTwice(response, FEED_LIST);
+        }
+        long twoPass = (System.nanoTime() - start) / rounds;
+        System.out.println(String.format("%d bytes, streaming %d us, two pass %d us",
+                response.length(), streaming / 1000, twoPass / 1000));
+    }
+}
@@ -0,0 +1,115 @@
+package com.mooc.libnetwork;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * DNS缓存,以及用MockWebServer充当服务端对比预热前后首个请求的耗时
+ */
+public class NetworkProfileTest {
+    private static final String HOST = "localhost";
+
+    private MockWebServer mServer;
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new MockWebServer();
+        mServer.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void cachedWithinTtl() throws Exception {
+        DnsCache dns = new DnsCache(60 * 1000);
+        List<InetAddress> first = dns.lookup(HOST);
+        assertFalse(first.isEmpty());
+        assertSame(first, dns.lookup(HOST));
+    }
+
+    @Test
+    public void expiredAfterTtl() throws Exception {
+        DnsCache dns = new DnsCache(1);
+        List<InetAddress> first = dns.lookup(HOST);
+        Thread.sleep(5);
+        assertNotSame(first, dns.lookup(HOST));
+    }
+
+    @Test
+    public void disabledWhenTtlIsZero() throws Exception {
+        DnsCache dns = new DnsCache(60 * 1000);
+        List<InetAddress> first = dns.lookup(HOST);
+        dns.setTtl(0);
+        assertNotSame(first, dns.lookup(HOST));
+    }
+
+    //和ApiService.applyProfile一样的参数
+    private static OkHttpClient createClient(NetworkProfile profile) {
+        DnsCache dns = new DnsCache(profile.dnsCacheTtlMillis);
+        return new OkHttpClient.Builder()
+                .dns(dns)
+                .connectTimeout(profile.connectTimeoutMillis, TimeUnit.MILLISECONDS)
+                .readTimeout(profile.readTimeoutMillis, TimeUnit.MILLISECONDS)
+                .connectionPool(new ConnectionPool(profile.maxIdleConnections, profile.keepAliveMinutes, TimeUnit.MINUTES))
+                .build();
+    }
+
+    private long request(OkHttpClient client, String path) throws Exception {
+        long start = System.nanoTime();
+        Response response = client.newCall(new Request.Builder().url(mServer.url(path)).build()).execute();
+        response.body().string();
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * 预热(解析DNS并建立一条连接)之后,首个请求复用预热的连接
+     */
+    @Test
+    public void prewarmedFirstRequestReusesConnection() throws Exception {
+        final int rounds = 20;
+        long cold = 0;
+        long warm = 0;
+        for (int i = 0; i < rounds; i++) {
+            mServer.enqueue(new MockResponse().setBody("{}"));
+            OkHttpClient client = createClient(new NetworkProfile());
+            cold += request(client, "/feeds/queryHotFeedsList");
+            //每个新client的第一个请求都要新建连接
+            assertEquals(0, mServer.takeRequest().getSequenceNumber());
+            client.connectionPool().evictAll();
+        }
+        for (int i = 0; i < rounds; i++) {
+            mServer.enqueue(new MockResponse());
+            mServer.enqueue(new MockResponse().setBody("{}"));
+            OkHttpClient client = createClient(new NetworkProfile());
+            //和ApiService.prewarm一样: 先解析host,再发一个HEAD把连接放进连接池
+            client.dns().lookup(HOST);
+            client.newCall(new Request.Builder().url(mServer.url("/")).head().build()).execute().close();
+            mServer.takeRequest();
+            warm += request(client, "/feeds/queryHotFeedsList");
+            assertEquals(1, mServer.takeRequest().getSequenceNumber());
+            client.connectionPool().evictAll();
+        }
+        System.out.println(String.format("first request: cold %d us, prewarmed %d us",
+                cold / rounds / 1000, warm / rounds / 1000));
+    }
+}
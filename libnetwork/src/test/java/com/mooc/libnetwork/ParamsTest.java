@@ -0,0 +1,59 @@
+package com.mooc.libnetwork;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParamsTest {
+
+    @Test
+    public void keysAreSorted() {
+        Params params = new Params();
+        params.put("userId", 1L);
+        params.put("feedId", 2L);
+        params.put("pageCount", 10L);
+        assertEquals(3, params.size());
+        assertEquals("feedId", params.keyAt(0));
+        assertEquals("pageCount", params.keyAt(1));
+        assertEquals("userId", params.keyAt(2));
+    }
+
+    @Test
+    public void putReplacesValueAndType() {
+        Params params = new Params();
+        params.put("key", 1L);
+        params.put("key", "value");
+        assertEquals(1, params.size());
+        assertEquals("value", params.valueAt(0));
+        params.put("key", true);
+        assertEquals("true", params.valueAt(0));
+    }
+
+    @Test
+    public void valuesMatchStringValueOf() {
+        Params params = new Params();
+        params.put("a", Long.MAX_VALUE);
+        params.put("b", 0.1d);
+        params.put("c", 0.1f);
+        params.put("d", false);
+        params.put("e", "中文");
+        assertEquals(String.valueOf(Long.MAX_VALUE), params.valueAt(0));
+        assertEquals(String.valueOf(0.1d), params.valueAt(1));
+        assertEquals(String.valueOf(0.1f), params.valueAt(2));
+        assertEquals("false", params.valueAt(3));
+        assertEquals("中文", params.valueAt(4));
+    }
+
+    @Test
+    public void growsPastInitialCapacity() {
+        Params params = new Params();
+        for (int i = 99; i >= 0; i--) {
+            params.put("key" + (char) ('a' + i % 26) + i, i);
+        }
+        assertEquals(100, params.size());
+        for (int i = 1; i < params.size(); i++) {
+            assertTrue(params.keyAt(i - 1).compareTo(params.keyAt(i)) < 0);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.mooc.libnetwork;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 调度器是全局的,每个测试用自己的host和tag,结束时把自己的任务都finish掉
+ */
+public class RequestSchedulerTest {
+    private static final OkHttpClient sClient = new OkHttpClient();
+
+    private static class TestTask extends RequestScheduler.Task {
+        boolean started;
+        boolean cancelledInQueue;
+
+        TestTask(int priority, String host, Object tag) {
+            super(priority, host, tag);
+        }
+
+        @Override
+        void onStart() {
+            started = true;
+        }
+
+        @Override
+        void onCancel() {
+            cancelledInQueue = true;
+        }
+    }
+
+    private static List<TestTask> enqueue(int count, int priority, String host, Object tag) {
+        List<TestTask> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            TestTask task = new TestTask(priority, host, tag);
+            tasks.add(task);
+            RequestScheduler.enqueue(task);
+        }
+        return tasks;
+    }
+
+    private static int startedCount(List<TestTask> tasks) {
+        int count = 0;
+        for (TestTask task : tasks) {
+            if (task.started) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void finishAll(List<? extends RequestScheduler.Task> tasks) {
+        for (RequestScheduler.Task task : tasks) {
+            RequestScheduler.finish(task);
+        }
+    }
+
+    private static Call newCall() {
+        return sClient.newCall(new okhttp3.Request.Builder().url("http://localhost/").build());
+    }
+
+    @Test
+    public void limitsRunningPerPriority() {
+        List<TestTask> tasks = enqueue(3, Request.PREFETCH, "limitsRunningPerPriority", null);
+        assertEquals(2, startedCount(tasks));
+        assertFalse(tasks.get(2).started);
+
+        RequestScheduler.finish(tasks.get(0));
+        assertTrue(tasks.get(2).started);
+        finishAll(tasks);
+    }
+
+    @Test
+    public void immediateIsNotLimited() {
+        List<TestTask> tasks = enqueue(10, Request.IMMEDIATE, "immediateIsNotLimited", null);
+        assertEquals(10, startedCount(tasks));
+        finishAll(tasks);
+    }
+
+    @Test
+    public void freeHostSlotGoesToHigherPriority() {
+        String host = "freeHostSlotGoesToHigherPriority";
+        //IMMEDIATE不受host上限限制,但是占着host的名额
+        List<TestTask> immediate = enqueue(6, Request.IMMEDIATE, host, null);
+        List<TestTask> prefetch = enqueue(1, Request.PREFETCH, host, null);
+        List<TestTask> visible = enqueue(1, Request.VISIBLE, host, null);
+        assertFalse(prefetch.get(0).started);
+        assertFalse(visible.get(0).started);
+
+        RequestScheduler.finish(immediate.get(0));
+        assertTrue(visible.get(0).started);
+        assertFalse(prefetch.get(0).started);
+
+        finishAll(immediate);
+        assertTrue(prefetch.get(0).started);
+        finishAll(visible);
+        finishAll(prefetch);
+    }
+
+    @Test
+    public void cancelByPriorityAndTag() {
+        String host = "cancelByPriorityAndTag";
+        Object page = new Object();
+        Object otherPage = new Object();
+        List<TestTask> running = enqueue(1, Request.BACKGROUND, host, page);
+        List<TestTask> pending = enqueue(2, Request.BACKGROUND, host, page);
+        List<TestTask> other = enqueue(1, Request.BACKGROUND, host, otherPage);
+        assertTrue(running.get(0).started);
+        long cancelledCount = RequestScheduler.getCancelledCount();
+
+        //进行中但还没bind的也算
+        assertEquals(3, RequestScheduler.cancel(Request.BACKGROUND, page));
+        assertEquals(cancelledCount + 3, RequestScheduler.getCancelledCount());
+        assertTrue(pending.get(0).cancelledInQueue);
+        assertTrue(pending.get(1).cancelledInQueue);
+        assertFalse(other.get(0).cancelledInQueue);
+        //再取消一次不重复计数
+        assertEquals(0, RequestScheduler.cancel(Request.BACKGROUND, page));
+
+        //bind时发现已经取消了
+        Call call = newCall();
+        RequestScheduler.bind(running.get(0), call);
+        assertTrue(call.isCanceled());
+
+        RequestScheduler.finish(running.get(0));
+        assertTrue(other.get(0).started);
+        finishAll(other);
+    }
+
+    @Test
+    public void cancelRunningTaskCancelsCall() {
+        List<TestTask> tasks = enqueue(1, Request.VISIBLE, "cancelRunningTaskCancelsCall", null);
+        Call call = newCall();
+        RequestScheduler.bind(tasks.get(0), call);
+        RequestScheduler.cancel(tasks.get(0));
+        assertTrue(call.isCanceled());
+        //进行中的不回调onCancel,由Call的失败回调结束
+        assertFalse(tasks.get(0).cancelledInQueue);
+        finishAll(tasks);
+    }
+
+    /**
+     * 同步请求被放行之后、await返回之前被取消,调用方finish之后名额要还回来
+     */
+    @Test
+    public void cancelledSyncTaskReleasesSlot() {
+        String host = "cancelledSyncTaskReleasesSlot";
+        Object page = new Object();
+        RequestScheduler.SyncTask sync = new RequestScheduler.SyncTask(Request.BACKGROUND, host, page);
+        RequestScheduler.enqueue(sync);
+        List<TestTask> next = enqueue(1, Request.BACKGROUND, host, null);
+        assertFalse(next.get(0).started);
+
+        assertEquals(1, RequestScheduler.cancel(Request.BACKGROUND, page));
+        assertFalse(sync.await());
+        RequestScheduler.finish(sync);
+        assertTrue(next.get(0).started);
+        finishAll(next);
+    }
+}
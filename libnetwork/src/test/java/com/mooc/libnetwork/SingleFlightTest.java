@@ -0,0 +1,57 @@
+package com.mooc.libnetwork;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SingleFlightTest {
+
+    @Test
+    public void laterCallersWaitForTheFirst() {
+        String key = "GET|/feeds/queryHotFeedsList?feedId=0|laterCallersWaitForTheFirst";
+        JsonCallback first = new JsonCallback() {
+        };
+        JsonCallback second = new JsonCallback() {
+        };
+        long deduped = SingleFlight.getDedupedCount();
+
+        assertTrue(SingleFlight.join(key, first));
+        assertFalse(SingleFlight.join(key, second));
+        assertEquals(deduped + 1, SingleFlight.getDedupedCount());
+
+        List<JsonCallback> callbacks = SingleFlight.complete(key);
+        assertEquals(2, callbacks.size());
+        //发起请求的排在第一个,拿到的是原始的结果
+        assertSame(first, callbacks.get(0));
+        assertSame(second, callbacks.get(1));
+    }
+
+    @Test
+    public void completedKeyStartsNewFlight() {
+        String key = "GET|/tag/queryTagList|completedKeyStartsNewFlight";
+        assertTrue(SingleFlight.join(key, new JsonCallback() {
+        }));
+        SingleFlight.complete(key);
+        assertTrue(SingleFlight.join(key, new JsonCallback() {
+        }));
+        assertEquals(1, SingleFlight.complete(key).size());
+        assertTrue(SingleFlight.complete(key).isEmpty());
+    }
+
+    @Test
+    public void differentKeysDoNotMerge() {
+        String visible = "GET|/feeds/queryHotFeedsList|" + Request.VISIBLE;
+        String prefetch = "GET|/feeds/queryHotFeedsList|" + Request.PREFETCH;
+        assertTrue(SingleFlight.join(visible, new JsonCallback() {
+        }));
+        assertTrue(SingleFlight.join(prefetch, new JsonCallback() {
+        }));
+        assertEquals(1, SingleFlight.complete(visible).size());
+        assertEquals(1, SingleFlight.complete(prefetch).size());
+    }
+}
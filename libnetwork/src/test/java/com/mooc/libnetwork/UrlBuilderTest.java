@@ -0,0 +1,139 @@
+package com.mooc.libnetwork;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class UrlBuilderTest {
+    private static final String URL = "http://123.56.232.18:8080/serverdemo/feeds/queryHotFeedsList";
+
+    @Test
+    public void emptyParamsReturnUrl() {
+        assertSame(URL, UrlBuilder.build(URL, new Params()));
+    }
+
+    @Test
+    public void orderIndependent() {
+        Params a = new Params();
+        a.put("userId", 3223400206308231L);
+        a.put("feedId", 0L);
+        a.put("feedType", "all");
+        Params b = new Params();
+        b.put("feedType", "all");
+        b.put("feedId", 0L);
+        b.put("userId", 3223400206308231L);
+        String url = UrlBuilder.build(URL, a);
+        assertEquals(URL + "?feedId=0&feedType=all&userId=3223400206308231", url);
+        assertEquals(url, UrlBuilder.build(URL, b));
+    }
+
+    @Test
+    public void appendsToExistingQuery() {
+        Params params = new Params();
+        params.put("b", 1L);
+        assertEquals(URL + "?a=0&b=1", UrlBuilder.build(URL + "?a=0", params));
+    }
+
+    @Test
+    public void encodesLikeUrlEncoder() throws Exception {
+        String[] values = {
+                "", "abcXYZ019", ".-*_", " ", "a b+c", "&=?/#%", "~!'()",
+                "当中国地图出来那一幕", "é", "😀", "a\uD83Dz", "\uDE00",
+        };
+        for (String value : values) {
+            StringBuilder builder = new StringBuilder();
+            UrlBuilder.appendEncoded(builder, value);
+            assertEquals(value, URLEncoder.encode(value, "UTF-8"), builder.toString());
+        }
+    }
+
+    @Test
+    public void hashesLongKeys() {
+        StringBuilder builder = new StringBuilder(URL).append('?');
+        while (builder.length() <= UrlBuilder.MAX_KEY_LENGTH) {
+            builder.append("feedText=").append(builder.length()).append('&');
+        }
+        String key = builder.toString();
+        String hashed = UrlBuilder.hashIfLong(key);
+        assertTrue(hashed.startsWith("sha1:"));
+        assertEquals(5 + 40, hashed.length());
+        assertEquals(hashed, UrlBuilder.hashIfLong(key));
+        assertSame(URL, UrlBuilder.hashIfLong(URL));
+    }
+
+    //改造之前的做法: 参数装箱放进HashMap,反射判断是不是基本类型,拼url时排序再用URLEncoder编码
+    private static String buildWithMap(String url, Map<String, Object> params) throws Exception {
+        List<String> keys = new ArrayList<>(params.keySet());
+        Collections.sort(keys);
+        StringBuilder builder = new StringBuilder(url);
+        char separator = '?';
+        for (String key : keys) {
+            Object value = params.get(key);
+            boolean primitive;
+            try {
+                Field field = value.getClass().getField("TYPE");
+                primitive = ((Class) field.get(null)).isPrimitive();
+            } catch (NoSuchFieldException e) {
+                primitive = false;
+            }
+            builder.append(separator).append(key).append('=')
+                    .append(primitive ? String.valueOf(value) : URLEncoder.encode(String.valueOf(value), "UTF-8"));
+            separator = '&';
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 列表翻页的典型参数,对比每次构造请求url的耗时
+     */
+    @Test
+    public void benchmarkAgainstBoxedMap() throws Exception {
+        final int warmup = 20000;
+        final int rounds = 200000;
+        long sink = 0;
+        for (int i = 0; i < warmup; i++) {
+            sink += buildWithParams(i).length() + buildWithMap(i).length();
+        }
+        assertEquals(buildWithMap(1), buildWithParams(1));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            sink += buildWithParams(i).length();
+        }
+        long params = (System.nanoTime() - start) / rounds;
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            sink += buildWithMap(i).length();
+        }
+        long map = (System.nanoTime() - start) / rounds;
+        System.out.println(String.format("request url: params %d ns, boxed map %d ns (%d)", params, map, sink));
+    }
+
+    private static String buildWithParams(int page) {
+        Params params = new Params();
+        params.put("feedType", "all");
+        params.put("userId", 3223400206308231L);
+        params.put("feedId", (long) page);
+        params.put("pageCount", 10L);
+        return UrlBuilder.build(URL, params);
+    }
+
+    private static String buildWithMap(int page) throws Exception {
+        HashMap<String, Object> params = new HashMap<>();
+        params.put("feedType", "all");
+        params.put("userId", 3223400206308231L);
+        params.put("feedId", page);
+        params.put("pageCount", 10);
+        return buildWithMap(URL, params);
+    }
+}
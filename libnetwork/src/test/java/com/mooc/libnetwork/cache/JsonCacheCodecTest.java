@@ -0,0 +1,163 @@
+package com.mooc.libnetwork.cache;
+
+import com.alibaba.fastjson.JSONException;
+
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class JsonCacheCodecTest {
+    //和app里Feed差不多的结构
+    public static class TestUser implements Serializable {
+        public long userId;
+        public String name;
+        public String avatar;
+    }
+
+    public static class TestFeed implements Serializable {
+        public int id;
+        public long itemId;
+        public int itemType;
+        public long createTime;
+        public double duration;
+        public String feeds_text;
+        public String url;
+        public String cover;
+        public int width;
+        public int height;
+        public TestUser author;
+    }
+
+    static ArrayList<TestFeed> createFeeds(int count) {
+        ArrayList<TestFeed> feeds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            TestFeed feed = new TestFeed();
+            feed.id = i;
+            feed.itemId = 6739143063064549000L + i;
+            feed.itemType = i % 2 + 1;
+            feed.createTime = 1569079017L + i;
+            feed.duration = 299.435;
+            feed.feeds_text = "当中国地图出来那一幕，我眼泪都出来了！" + i;
+            feed.url = "https://pipijoke.oss-cn-hangzhou.aliyuncs.com/" + feed.itemId + ".mp4";
+            feed.cover = "https://pipijoke.oss-cn-hangzhou.aliyuncs.com/" + feed.itemId + ".jpg";
+            feed.width = 640;
+            feed.height = 368;
+            feed.author = new TestUser();
+            feed.author.userId = 3223400206308231L;
+            feed.author.name = "user" + i;
+            feed.author.avatar = "https://pipijoke.oss-cn-hangzhou.aliyuncs.com/avatar.jpg";
+            feeds.add(feed);
+        }
+        return feeds;
+    }
+
+    private static Object decode(CacheCodec codec, byte[] data) throws Exception {
+        return codec.decode(data, 0, data.length);
+    }
+
+    @Test
+    public void roundTripKeepsTypes() throws Exception {
+        JsonCacheCodec codec = new JsonCacheCodec();
+        ArrayList<TestFeed> feeds = createFeeds(20);
+
+        Object decoded = decode(codec, codec.encode(feeds));
+
+        assertTrue(decoded instanceof List);
+        List<?> list = (List<?>) decoded;
+        assertEquals(20, list.size());
+        for (int i = 0; i < list.size(); i++) {
+            assertTrue(list.get(i) instanceof TestFeed);
+            TestFeed expect = feeds.get(i);
+            TestFeed actual = (TestFeed) list.get(i);
+            assertEquals(expect.itemId, actual.itemId);
+            assertEquals(expect.feeds_text, actual.feeds_text);
+            assertEquals(expect.duration, actual.duration, 0);
+            assertEquals(expect.author.userId, actual.author.userId);
+            assertEquals(expect.author.name, actual.author.name);
+        }
+    }
+
+    @Test
+    public void decodeWithOffset() throws Exception {
+        JsonCacheCodec codec = new JsonCacheCodec();
+        byte[] payload = codec.encode(createFeeds(1).get(0));
+        //CacheManager存的数据第一个字节是版本号
+        byte[] data = new byte[payload.length + 1];
+        data[0] = codec.version();
+        System.arraycopy(payload, 0, data, 1, payload.length);
+
+        TestFeed feed = (TestFeed) codec.decode(data, 1, payload.length);
+        assertEquals(6739143063064549000L, feed.itemId);
+    }
+
+    @Test
+    public void nullRoundTrip() throws Exception {
+        JsonCacheCodec codec = new JsonCacheCodec();
+        assertNull(decode(codec, codec.encode(null)));
+    }
+
+    @Test(expected = JSONException.class)
+    public void rejectsTypesOutsideAcceptedPackage() throws Exception {
+        byte[] data = "{\"@type\":\"org.junit.runner.Description\"}".getBytes(Charset.forName("UTF-8"));
+        decode(new JsonCacheCodec(), data);
+    }
+
+    @Test
+    public void rawResponseRoundTrip() throws Exception {
+        RawResponseCodec codec = new RawResponseCodec();
+        byte[] body = "{\"status\":200}".getBytes(Charset.forName("UTF-8"));
+        byte[] data = new byte[body.length + 1];
+        System.arraycopy(codec.encode(body), 0, data, 1, body.length);
+        assertEquals(new String(body, "UTF-8"), new String((byte[]) codec.decode(data, 1, body.length), "UTF-8"));
+    }
+
+    /**
+     * 20条帖子的列表,对比java序列化和json codec的体积以及编解码耗时
+     */
+    @Test
+    public void benchmarkAgainstSerializable() throws Exception {
+        ArrayList<TestFeed> feeds = createFeeds(20);
+        CacheCodec serializable = new SerializableCodec();
+        CacheCodec json = new JsonCacheCodec();
+
+        byte[] serializableBytes = serializable.encode(feeds);
+        byte[] jsonBytes = json.encode(feeds);
+        assertTrue(jsonBytes.length < serializableBytes.length);
+
+        long[] serializableTime = measure(serializable, feeds);
+        long[] jsonTime = measure(json, feeds);
+        System.out.println(String.format("serializable: %d bytes, encode %d us, decode %d us",
+                serializableBytes.length, serializableTime[0] / 1000, serializableTime[1] / 1000));
+        System.out.println(String.format("json:         %d bytes, encode %d us, decode %d us",
+                jsonBytes.length, jsonTime[0] / 1000, jsonTime[1] / 1000));
+    }
+
+    //预热之后取多次的平均值, 返回 {encode, decode} 纳秒
+    private static long[] measure(CacheCodec codec, Object body) throws Exception {
+        final int warmup = 200;
+        final int rounds = 1000;
+        byte[] data = null;
+        for (int i = 0; i < warmup; i++) {
+            data = codec.encode(body);
+            decode(codec, data);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            data = codec.encode(body);
+        }
+        long encode = (System.nanoTime() - start) / rounds;
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            decode(codec, data);
+        }
+        long decode = (System.nanoTime() - start) / rounds;
+        return new long[]{encode, decode};
+    }
+}
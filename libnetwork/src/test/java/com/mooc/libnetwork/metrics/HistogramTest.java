@@ -0,0 +1,81 @@
+package com.mooc.libnetwork.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+
+    @Test
+    public void emptyHistogram() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getTotalCount());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void bucketsCoverValueWithinOneEighth() {
+        long value = 0;
+        while (value < (1L << 35)) {
+            int index = Histogram.indexOf(value);
+            long upper = Histogram.upperBoundOf(index);
+            assertTrue(value + " > " + upper, value <= upper);
+            //上界和值的差不超过值的1/8
+            assertTrue(value + " -> " + upper, upper - value <= value / 8);
+            if (index > 0) {
+                assertTrue(Histogram.upperBoundOf(index - 1) < value);
+            }
+            value = value < 64 ? value + 1 : value + value / 7;
+        }
+    }
+
+    @Test
+    public void hugeValuesGoToLastBucket() {
+        assertEquals(Histogram.indexOf(1L << 35), Histogram.indexOf(Long.MAX_VALUE));
+        Histogram histogram = new Histogram();
+        histogram.record(Long.MAX_VALUE / 2);
+        assertEquals(Long.MAX_VALUE / 2, histogram.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void percentiles() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(1000, histogram.getTotalCount());
+        assertEquals(500500, histogram.getSum());
+        assertEquals(1000, histogram.getMax());
+        assertWithin(500, histogram.getValueAtPercentile(50));
+        assertWithin(900, histogram.getValueAtPercentile(90));
+        assertWithin(990, histogram.getValueAtPercentile(99));
+        //不会超过记录过的最大值
+        assertEquals(1000, histogram.getValueAtPercentile(100));
+        assertEquals(1, histogram.getValueAtPercentile(0));
+    }
+
+    @Test
+    public void negativeRecordedAsZero() {
+        Histogram histogram = new Histogram();
+        histogram.record(-5);
+        assertEquals(0, histogram.getSum());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void reset() {
+        Histogram histogram = new Histogram();
+        histogram.record(100);
+        histogram.reset();
+        assertEquals(0, histogram.getTotalCount());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        histogram.record(3);
+        assertEquals(3, histogram.getValueAtPercentile(99));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(expected + " vs " + actual, actual >= expected && actual - expected <= expected / 8);
+    }
+}